@@ -0,0 +1,75 @@
+package hello.querydsl.benchmark;
+
+import hello.querydsl.QuerydslApplication;
+import hello.querydsl.controller.MemberDataLoader;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+/*
+    벤치마크마다 내장 H2(메모리) 위에 스프링 컨텍스트를 띄우고 members 건수만큼 데이터를 적재한다.
+    측정 대상 쿼리 자체를 비교하기 위해 검색 결과 캐시와 2차 캐시는 끈다.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkContext {
+    static final int TEAM_COUNT = 10;
+
+    @Param({"10000"})
+    public int members;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(Stream.concat(Stream.of("--spring.profiles.active=bench",
+                                "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                                "--spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                                "--querydsl.result-cache.enabled=false",
+                                "--logging.level.org.hibernate.SQL=warn",
+                                "--logging.level.root=warn"),
+                        Stream.of(additionalArgs())).toArray(String[]::new));
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        context.getBean(MemberDataLoader.class).load(TEAM_COUNT, members / TEAM_COUNT, 0);
+        afterLoad();
+    }
+
+    //하위 State 에서 설정을 더하거나 적재 후 준비 작업을 할 때 쓴다
+    protected String[] additionalArgs() {
+        return new String[0];
+    }
+
+    protected void afterLoad() {
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    //스프링 빈이 아닌 클래스(MemberTestRepository 등)를 의존관계 주입까지 해서 만든다
+    public <T> T createBean(Class<T> type) {
+        return context.getAutowireCapableBeanFactory().createBean(type);
+    }
+
+    public TransactionTemplate getTransactionTemplate() {
+        return transactionTemplate;
+    }
+}
@@ -0,0 +1,73 @@
+package hello.querydsl.benchmark;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.repository.MemberColumnStore;
+import hello.querydsl.repository.MemberJpaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    같은 조건(teamName + 나이 범위)을 메모리 컬럼 복제본(search)과 DB(searchByBuilder)에서 조회하는 비교
+    행 수를 늘리려면 -p members=1000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColumnStoreBenchmark {
+    private MemberJpaRepository memberJpaRepository;
+    private MemberSearchCondition condition;
+
+    @State(Scope.Benchmark)
+    public static class ColumnStoreContext extends BenchmarkContext {
+        @Override
+        protected String[] additionalArgs() {
+            return new String[]{"--querydsl.column-store.enabled=true"};
+        }
+
+        //적재 후 복제본이 다시 만들어질 때까지 기다린다
+        @Override
+        protected void afterLoad() {
+            MemberColumnStore columnStore = getBean(MemberColumnStore.class);
+            long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(5);
+            while (!columnStore.isFresh()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("member column store did not become fresh");
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    @Setup
+    public void setUp(ColumnStoreContext context) {
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        condition.setAgeGoe(30);
+        condition.setAgeLoe(40);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> columnStore() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> database() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+}
@@ -0,0 +1,88 @@
+package hello.querydsl.benchmark;
+
+import hello.querydsl.controller.MemberCsvWriter;
+import hello.querydsl.dto.MemberTeamDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/*
+    DB 를 거치지 않고 MemberTeamDto 1M 행을 CSV 로 쓰는 비용만 비교한다. 출력은 Blackhole 로 버린다.
+    - csvWriter: MemberCsvWriter (재사용 버퍼에 바로 인코딩)
+    - stringPerRow: 필드를 문자열로 이어 붙인 뒤 행마다 getBytes
+    행당 할당량은 gc 프로파일러(gc.alloc.rate.norm)로 보고, 10M 행 export 의 힙 사용량은 이 값 x 행 수가 아니라 버퍼 크기로 일정해야 한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CsvExportBenchmark {
+    private static final int ROWS = 1_000_000;
+    private static final int DISTINCT_ROWS = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private MemberTeamDto[] rows;
+
+    @Setup
+    public void setUp() {
+        rows = new MemberTeamDto[DISTINCT_ROWS];
+        for (int i = 0; i < DISTINCT_ROWS; i++) {
+            rows[i] = new MemberTeamDto((long) i * 7919, "member" + i, i % 100, (long) i % 10, "team" + i % 10);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void csvWriter(Blackhole blackhole) throws IOException {
+        try (MemberCsvWriter writer = new MemberCsvWriter(new BlackholeOutputStream(blackhole), BUFFER_SIZE)) {
+            writer.writeHeader();
+            for (int i = 0; i < ROWS; i++) {
+                writer.write(rows[i & (DISTINCT_ROWS - 1)]);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void stringPerRow(Blackhole blackhole) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new BlackholeOutputStream(blackhole), BUFFER_SIZE)) {
+            out.write("memberId,username,age,teamId,teamName\r\n".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < ROWS; i++) {
+                MemberTeamDto row = rows[i & (DISTINCT_ROWS - 1)];
+                String line = row.getMemberId() + "," + row.getUsername() + "," + row.getAge() + ","
+                        + row.getTeamId() + "," + row.getTeamName() + "\r\n";
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+}
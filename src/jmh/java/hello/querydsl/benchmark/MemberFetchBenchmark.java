@@ -0,0 +1,66 @@
+package hello.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import hello.querydsl.entity.Member;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static hello.querydsl.entity.QMember.member;
+import static hello.querydsl.entity.QTeam.team;
+
+/*
+    회원 100명을 조회해서 팀 이름까지 읽을 때 fetch join 과 지연 로딩(팀마다 추가 쿼리) 비교
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MemberFetchBenchmark {
+    private static final int LIMIT = 100;
+
+    private JPAQueryFactory queryFactory;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        queryFactory = new JPAQueryFactory(context.getBean(EntityManager.class));
+        transactionTemplate = context.getTransactionTemplate();
+    }
+
+    @Benchmark
+    public void fetchJoin(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .join(member.team, team).fetchJoin()
+                    .limit(LIMIT)
+                    .fetch();
+            for (Member m : members) {
+                blackhole.consume(m.getTeam().getName());
+            }
+        });
+    }
+
+    @Benchmark
+    public void lazyNavigation(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .limit(LIMIT)
+                    .fetch();
+            for (Member m : members) {
+                blackhole.consume(m.getTeam().getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package hello.querydsl.benchmark;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.entity.Member;
+import hello.querydsl.repository.MemberRepository;
+import hello.querydsl.repository.MemberTestRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+    MemberRepositoryImpl 의 searchPageSimple / searchPageComplex / searchSlice,
+    MemberTestRepository 의 applyPagination (content, count 쿼리 분리) 비교
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MemberPagingBenchmark {
+    private MemberRepository memberRepository;
+    private MemberTestRepository memberTestRepository;
+    private MemberSearchCondition condition;
+    private Pageable pageable;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        memberRepository = context.getBean(MemberRepository.class);
+        memberTestRepository = context.createBean(MemberTestRepository.class);
+        condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        pageable = PageRequest.of(3, 20);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSimple() {
+        return memberRepository.searchPageSimple(condition, pageable);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex() {
+        return memberRepository.searchPageComplex(condition, pageable);
+    }
+
+    @Benchmark
+    public Slice<MemberTeamDto> searchSlice() {
+        return memberRepository.searchSlice(condition, null, pageable.getPageSize());
+    }
+
+    @Benchmark
+    public Page<Member> applyPagination() {
+        return memberTestRepository.searchPageByApplyPage3(condition, pageable);
+    }
+}
@@ -0,0 +1,106 @@
+package hello.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.dto.QMemberTeamDto;
+import hello.querydsl.entity.Member;
+import hello.querydsl.repository.MemberJpaRepository;
+import hello.querydsl.repository.MemberSearchQueryCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static hello.querydsl.entity.QMember.member;
+import static hello.querydsl.entity.QTeam.team;
+import static hello.querydsl.repository.MemberSearchPredicates.ageGoe;
+import static hello.querydsl.repository.MemberSearchPredicates.ageLoe;
+import static hello.querydsl.repository.MemberSearchPredicates.teamNameEq;
+import static hello.querydsl.repository.MemberSearchPredicates.usernameEq;
+
+/*
+    search(결과 캐시 / 컬럼 복제본 / 조건 조합별 JPQL 캐시) / searchByBuilder 비교,
+    JPQL findByUsername / findByUsername_querydsl 비교
+    - searchQueryCached / searchQuerydslPerCall: 같은 읽기 전용 트랜잭션 안에서 JPQL 을 만드는 방법만 다르다.
+      (MemberSearchQueryCache 로 미리 만든 JPQL 에 바인딩 vs 매 호출마다 QMemberTeamDto 로 쿼리 생성)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MemberSearchBenchmark {
+    private MemberJpaRepository memberJpaRepository;
+    private MemberSearchQueryCache searchQueryCache;
+    private EntityManager em;
+    private JPAQueryFactory queryFactory;
+    private TransactionTemplate readOnlyTransactionTemplate;
+    private MemberSearchCondition condition;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        searchQueryCache = context.getBean(MemberSearchQueryCache.class);
+        em = context.getBean(EntityManager.class);
+        queryFactory = new JPAQueryFactory(em);
+        readOnlyTransactionTemplate = new TransactionTemplate(context.getTransactionTemplate().getTransactionManager());
+        readOnlyTransactionTemplate.setReadOnly(true);
+        condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        condition.setAgeGoe(30);
+        condition.setAgeLoe(40);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchByBuilder() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchQueryCached() {
+        return readOnlyTransactionTemplate.execute(status ->
+                searchQueryCache.contentQuery(em, condition).getResultList());
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchQuerydslPerCall() {
+        return readOnlyTransactionTemplate.execute(status -> queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .fetch());
+    }
+
+    @Benchmark
+    public List<Member> findByUsername() {
+        return memberJpaRepository.findByUsername("member42");
+    }
+
+    @Benchmark
+    public List<Member> findByUsernameQuerydsl() {
+        return memberJpaRepository.findByUsername_querydsl("member42");
+    }
+}
@@ -0,0 +1,96 @@
+package hello.querydsl.benchmark;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Projections;
+import hello.querydsl.dto.MemberDto;
+import hello.querydsl.dto.QMemberDto;
+import hello.querydsl.repository.support.DtoProjections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static hello.querydsl.entity.QMember.member;
+
+/*
+    DB 를 거치지 않고 FactoryExpression.newInstance 만 1M 행 만큼 호출해서 프로젝션 방식별 비용을 비교한다.
+    @OperationsPerInvocation 으로 결과는 행 단위이고, 행당 할당량은 gc 프로파일러(gc.alloc.rate.norm)로 본다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectionBenchmark {
+    private static final int ROWS = 1_000_000;
+    private static final int DISTINCT_ROWS = 1024;
+
+    private Object[][] rows;
+    private FactoryExpression<MemberDto> bean;
+    private FactoryExpression<MemberDto> fields;
+    private FactoryExpression<MemberDto> constructor;
+    private FactoryExpression<MemberDto> queryProjection;
+    private FactoryExpression<MemberDto> dtoConstructor;
+    private FactoryExpression<MemberDto> dtoBean;
+
+    @Setup
+    public void setUp() {
+        rows = new Object[DISTINCT_ROWS][];
+        for (int i = 0; i < DISTINCT_ROWS; i++) {
+            rows[i] = new Object[]{"member" + i, i % 100};
+        }
+        bean = Projections.bean(MemberDto.class, member.username, member.age);
+        fields = Projections.fields(MemberDto.class, member.username, member.age);
+        constructor = Projections.constructor(MemberDto.class, member.username, member.age);
+        queryProjection = new QMemberDto(member.username, member.age);
+        dtoConstructor = DtoProjections.constructor(MemberDto.class, member.username, member.age);
+        dtoBean = DtoProjections.bean(MemberDto.class, member.username, member.age);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void projectionsBean(Blackhole blackhole) {
+        project(bean, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void projectionsFields(Blackhole blackhole) {
+        project(fields, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void projectionsConstructor(Blackhole blackhole) {
+        project(constructor, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void queryProjection(Blackhole blackhole) {
+        project(queryProjection, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void dtoProjectionsConstructor(Blackhole blackhole) {
+        project(dtoConstructor, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void dtoProjectionsBean(Blackhole blackhole) {
+        project(dtoBean, blackhole);
+    }
+
+    private void project(FactoryExpression<MemberDto> projection, Blackhole blackhole) {
+        for (int i = 0; i < ROWS; i++) {
+            blackhole.consume(projection.newInstance(rows[i & (DISTINCT_ROWS - 1)]));
+        }
+    }
+}
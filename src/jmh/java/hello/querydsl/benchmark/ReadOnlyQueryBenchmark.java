@@ -0,0 +1,75 @@
+package hello.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import hello.querydsl.entity.Member;
+import org.hibernate.jpa.QueryHints;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static hello.querydsl.entity.QMember.member;
+
+/*
+    회원 전체(members 건)를 엔티티로 조회한 뒤 flush 할 때까지의 비용 비교
+    - managed: 일반 조회. 건마다 스냅샷을 만들고 flush 때 모두 dirty checking 한다.
+    - readOnlyHint: org.hibernate.readOnly 힌트. 스냅샷이 없고 flush 때 건너뛴다.
+    - readOnlyTransaction: 읽기 전용 트랜잭션 (FlushMode.MANUAL + 세션 기본 read-only)
+    힙 차이는 gc 프로파일러의 gc.alloc.rate.norm (B/op) 으로 본다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReadOnlyQueryBenchmark {
+    private EntityManager em;
+    private JPAQueryFactory queryFactory;
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTransactionTemplate;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        em = context.getBean(EntityManager.class);
+        queryFactory = new JPAQueryFactory(em);
+        transactionTemplate = context.getTransactionTemplate();
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    @Benchmark
+    public void managed(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Member> members = queryFactory.selectFrom(member).fetch();
+            blackhole.consume(members.size());
+            em.flush();
+        });
+    }
+
+    @Benchmark
+    public void readOnlyHint(Blackhole blackhole) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Member> members = queryFactory.selectFrom(member)
+                    .setHint(QueryHints.HINT_READONLY, true)
+                    .fetch();
+            blackhole.consume(members.size());
+            em.flush();
+        });
+    }
+
+    @Benchmark
+    public void readOnlyTransaction(Blackhole blackhole) {
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            List<Member> members = queryFactory.selectFrom(member).fetch();
+            blackhole.consume(members.size());
+            em.flush();
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package hello.querydsl.benchmark;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.monitor.RepositoryMetrics;
+import hello.querydsl.repository.MemberJpaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+    리포지토리 호출마다 추가되는 모니터링 비용.
+    - proxied / target: 같은 검색을 프록시(RepositoryMonitorAspect 포함)와 프록시 뒤의 원본 객체로 호출한다.
+      둘 다 바깥 트랜잭션 안에서 호출해서 트랜잭션 시작 비용은 빼고 aspect(SQL 집계, N+1 검사, 지표 기록) 비용만 차이로 남긴다.
+    - sqlMonitor: querydsl.sql-monitor.enabled. true 면 DataSource 래퍼(row 수, JDBC 시간 집계)까지 켠다.
+      모니터링 전체 비용은 proxied(sqlMonitor=true) 와 target(sqlMonitor=false) 의 차이로 본다.
+    - recordSingleThread / recordContended: 그중 지표 기록(메서드 + 조건 조합 2번)만, 여러 스레드가 같은 메서드에 동시에 기록하는 경우도 본다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RepositoryMetricsBenchmark {
+    private RepositoryMetrics metrics;
+    private MemberJpaRepository proxy;
+    private MemberJpaRepository target;
+    private TransactionTemplate transactionTemplate;
+    private MemberSearchCondition condition;
+
+    @State(Scope.Benchmark)
+    public static class MonitorContext extends BenchmarkContext {
+        @Param({"false", "true"})
+        public boolean sqlMonitor;
+
+        @Override
+        protected String[] additionalArgs() {
+            return new String[]{"--querydsl.sql-monitor.enabled=" + sqlMonitor};
+        }
+    }
+
+    @Setup
+    public void setUp(MonitorContext context) {
+        metrics = new RepositoryMetrics();
+        proxy = context.getBean(MemberJpaRepository.class);
+        target = (MemberJpaRepository) AopProxyUtils.getSingletonTarget(proxy);
+        transactionTemplate = context.getTransactionTemplate();
+        condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> proxied() {
+        return transactionTemplate.execute(status -> proxy.search(condition));
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> target() {
+        return transactionTemplate.execute(status -> target.search(condition));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void recordSingleThread() {
+        record();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordContended() {
+        record();
+    }
+
+    private void record() {
+        long nanos = ThreadLocalRandom.current().nextLong(50_000, 50_000_000);
+        metrics.record("MemberRepository.searchPageComplex", nanos, 20, false);
+        metrics.record("MemberRepository.searchPageComplex[teamName,ageGoe]", nanos, 20, false);
+    }
+}
@@ -1,44 +1,27 @@
 package hello.querydsl.controller;
 
-import hello.querydsl.entity.Member;
-import hello.querydsl.entity.Team;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
 
 @Profile("local")
 @Component
 @RequiredArgsConstructor
 public class InitMember {
-    private final InitMemberService initMemberService;
+    private final MemberDataLoader memberDataLoader;
+
+    @Value("${querydsl.loader.team-count:2}")
+    private int teamCount;
+    @Value("${querydsl.loader.members-per-team:50}")
+    private int membersPerTeam;
+    @Value("${querydsl.loader.skew:0}")
+    private double skew;
 
     @PostConstruct
     public void init() {
-        initMemberService.init();
-    }
-
-    @Component
-    static class InitMemberService {
-        @PersistenceContext
-        EntityManager em;
-
-        @Transactional
-        public void init() {
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-            em.persist(teamA);
-            em.persist(teamB);
-
-            for (int i = 0; i < 100; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i, selectedTeam));
-            }
-        }
+        memberDataLoader.load(teamCount, membersPerTeam, skew);
     }
 }
@@ -0,0 +1,216 @@
+package hello.querydsl.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import hello.querydsl.dto.BulkImportResult;
+import hello.querydsl.dto.MemberBulkDto;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.Team;
+import hello.querydsl.repository.MemberShardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/*
+    JSON 배열 또는 NDJSON 으로 들어오는 회원 목록을 한 건씩 읽어서 chunk 단위 트랜잭션으로 저장한다.
+    - 요청 본문 전체를 메모리에 올리지 않는다.
+    - 팀은 시작할 때 한 번 읽어 둔 이름 -> Team 맵으로 찾고, 없으면 해당 chunk 안에서 만든다.
+      chunk 가 롤백되면 그 chunk 에서 만든 팀은 맵에 반영하지 않는다.
+    - chunk 하나가 실패해도 다음 chunk 는 계속 진행하고, 실패 내용은 chunk 별로 돌려준다.
+    - 샤드 모드(querydsl.sharding.enabled)면 기본 DB 대신 MemberShardRepository 로 샤드에 저장한다.
+      샤드 간 트랜잭션이 없으므로 chunk 가 실패해도 다른 샤드에 이미 들어간 회원과 새로 만든 팀은 남는다.
+    - 타입이 맞지 않는 행("age": "x" 등)은 그 행만 건너뛰고 실패로 기록한다. 문법이 깨진 본문은 거기서 멈춘다.
+ */
+@Slf4j
+@Component
+public class MemberBulkImporter {
+    @PersistenceContext
+    private EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    //querydsl.sharding.enabled 일 때만 있다
+    private final MemberShardRepository memberShardRepository;
+
+    public MemberBulkImporter(PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${querydsl.bulk.chunk-size:1000}") int chunkSize,
+                              ObjectProvider<MemberShardRepository> memberShardRepository) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.memberShardRepository = memberShardRepository.getIfAvailable();
+    }
+
+    public BulkImportResult importMembers(InputStream in) throws IOException {
+        //검증을 통과한 chunk 의 행을 저장한다. 실패하면 예외를 던진다
+        Consumer<List<MemberBulkDto>> writer = memberShardRepository != null ? shardWriter() : databaseWriter();
+        BulkImportResult result = new BulkImportResult();
+        List<MemberBulkDto> chunk = new ArrayList<>(chunkSize);
+        //chunk 안 위치 -> 읽지 못한 행의 오류 (chunk 에는 null 로 자리만 둔다)
+        Map<Integer, String> rejected = new HashMap<>();
+        long rowIndex = 0;
+
+        //readValues 는 최상위 JSON 배열과 줄 단위로 이어진 JSON(NDJSON)을 모두 처리한다
+        try (MappingIterator<MemberBulkDto> rows = objectMapper.readerFor(MemberBulkDto.class).readValues(in)) {
+            while (rows.hasNextValue()) {
+                try {
+                    chunk.add(rows.nextValue());
+                } catch (MismatchedInputException e) {
+                    //값 하나의 타입 오류는 다음 hasNextValue 에서 그 행 끝까지 건너뛰고 이어서 읽는다
+                    rejected.put(chunk.size(), "invalid row (" + e.getOriginalMessage() + ")");
+                    chunk.add(null);
+                }
+                rowIndex++;
+                if (chunk.size() == chunkSize) {
+                    insertChunk(result, writer, rowIndex - chunk.size(), chunk, rejected);
+                    chunk.clear();
+                    rejected.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            //본문이 깨지면 이후 행의 경계를 알 수 없으므로 읽은 데까지만 저장하고 멈춘다. 깨진 행은 마지막 chunk 에 실패로 남긴다
+            rejected.put(chunk.size(), "malformed input, import stopped (" + e.getOriginalMessage() + ")");
+            chunk.add(null);
+            rowIndex++;
+            insertChunk(result, writer, rowIndex - chunk.size(), chunk, rejected);
+            return result;
+        }
+
+        insertChunk(result, writer, rowIndex - chunk.size(), chunk, rejected);
+        log.info("member bulk import: total={}, inserted={}, failed={}, chunks={}",
+                result.getTotalRows(), result.getInsertedRows(), result.getFailedRows(), result.getChunks());
+        return result;
+    }
+
+    private Consumer<List<MemberBulkDto>> databaseWriter() {
+        Map<String, Team> teams = loadTeams();
+        return rows -> {
+            Map<String, Team> createdTeams = new HashMap<>();
+            transactionTemplate.executeWithoutResult(status -> {
+                em.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+                for (MemberBulkDto row : rows) {
+                    Member member = new Member(row.getUsername(), row.getAge(), null);
+                    member.setTeam(resolveTeam(row.getTeamName(), teams, createdTeams));
+                    em.persist(member);
+                }
+                em.flush();
+                em.clear();
+            });
+            teams.putAll(createdTeams);
+        };
+    }
+
+    private Consumer<List<MemberBulkDto>> shardWriter() {
+        Map<String, Long> teamIds = memberShardRepository.findTeamIds();
+        return rows -> {
+            List<MemberShardRepository.NewMember> members = new ArrayList<>(rows.size());
+            for (MemberBulkDto row : rows) {
+                Long teamId = hasText(row.getTeamName())
+                        ? teamIds.computeIfAbsent(row.getTeamName(), memberShardRepository::saveTeam)
+                        : null;
+                members.add(new MemberShardRepository.NewMember(row.getUsername(), row.getAge(), teamId));
+            }
+            memberShardRepository.saveMembers(members);
+        };
+    }
+
+    private Map<String, Team> loadTeams() {
+        return transactionTemplate.execute(status -> {
+            Map<String, Team> teams = new HashMap<>();
+            for (Team team : em.createQuery("select t from Team t", Team.class).getResultList()) {
+                teams.put(team.getName(), team);
+            }
+            return teams;
+        });
+    }
+
+    private void insertChunk(BulkImportResult result, Consumer<List<MemberBulkDto>> writer, long firstRow,
+                             List<MemberBulkDto> rows, Map<Integer, String> rejected) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        BulkImportResult.ChunkReport report =
+                new BulkImportResult.ChunkReport(result.getChunks(), firstRow, firstRow + rows.size() - 1);
+
+        List<MemberBulkDto> valid = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            MemberBulkDto row = rows.get(i);
+            String error = rejected.containsKey(i) ? rejected.get(i) : validate(row);
+            if (error != null) {
+                report.getErrors().add("row " + (firstRow + i) + ": " + error);
+            } else {
+                valid.add(row);
+            }
+        }
+
+        try {
+            if (!valid.isEmpty()) {
+                writer.accept(valid);
+            }
+            report.setInsertedRows(valid.size());
+        } catch (RuntimeException e) {
+            report.setInsertedRows(0);
+            String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            report.getErrors().add(memberShardRepository != null
+                    ? "chunk failed, rows already written to other shards are kept: " + cause
+                    : "chunk rolled back: " + cause);
+        }
+
+        result.setChunks(result.getChunks() + 1);
+        result.setTotalRows(result.getTotalRows() + rows.size());
+        result.setInsertedRows(result.getInsertedRows() + report.getInsertedRows());
+        result.setFailedRows(result.getFailedRows() + rows.size() - report.getInsertedRows());
+        if (!report.getErrors().isEmpty()) {
+            result.getFailedChunks().add(report);
+        }
+    }
+
+    private Team resolveTeam(String teamName, Map<String, Team> teams, Map<String, Team> createdTeams) {
+        if (!hasText(teamName)) {
+            return null;
+        }
+        Team team = teams.get(teamName);
+        if (team != null) {
+            return team;
+        }
+        return createdTeams.computeIfAbsent(teamName, name -> {
+            Team created = new Team(name);
+            em.persist(created);
+            return created;
+        });
+    }
+
+    private String validate(MemberBulkDto row) {
+        if (row == null) {
+            return "empty row";
+        }
+        if (!hasText(row.getUsername())) {
+            return "username is required";
+        }
+        if (row.getAge() == null || row.getAge() < 0) {
+            return "age must be zero or positive";
+        }
+        return null;
+    }
+}
@@ -1,22 +1,62 @@
 package hello.querydsl.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hello.querydsl.dto.BulkImportResult;
+import hello.querydsl.dto.CursorSlice;
+import hello.querydsl.dto.MemberNameDto;
 import hello.querydsl.dto.MemberSearchCondition;
 import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.repository.MemberAsyncRepository;
 import hello.querydsl.repository.MemberJpaRepository;
+import hello.querydsl.repository.MemberNameIndex;
 import hello.querydsl.repository.MemberRepository;
+import hello.querydsl.repository.MemberSearchResultCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 @RequiredArgsConstructor
 @RestController
 public class MemberController {
+    private static final int MAX_SLICE_SIZE = 1000;
+    private static final int MAX_SUGGESTIONS = 100;
+    private static final String CURSOR_PREFIX = "m:";
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberAsyncRepository memberAsyncRepository;
+    private final MemberSearchResultCache memberSearchResultCache;
+    private final MemberNameIndex memberNameIndex;
+    private final MemberBulkImporter memberBulkImporter;
+    private final ObjectMapper objectMapper;
 
     //http://localhost:8080/v1/members?teamName=teamA&ageGoe=30
     @GetMapping("/v1/members")
@@ -24,6 +64,80 @@ public class MemberController {
         return memberJpaRepository.search(condition);
     }
 
+    //http://localhost:8080/v1/members/stream?teamName=teamA
+    //한 줄에 한 건씩(NDJSON) ResultSet 에서 꺼내는 대로 바로 내려준다
+    @GetMapping(value = "/v1/members/stream", produces = NDJSON_VALUE)
+    public StreamingResponseBody membersStream(MemberSearchCondition condition) {
+        return out -> {
+            BufferedOutputStream buffer = new BufferedOutputStream(out);
+            memberJpaRepository.forEachSearch(condition, dto -> {
+                try {
+                    buffer.write(objectMapper.writeValueAsBytes(dto));
+                    buffer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            buffer.flush();
+        };
+    }
+
+    /*
+        http://localhost:8080/v1/members/export?teamName=teamA&gzip=true
+        검색 결과 전체를 CSV 로 내려받는다. forEachSearch 의 forward-only 커서에서 한 건씩 꺼내서
+        MemberCsvWriter 의 버퍼에 바로 쓰므로 결과 건수와 상관없이 힙 사용량이 일정하다.
+        수백만 건이면 spring.mvc.async.request-timeout 을 넘기므로 StreamingResponseBody 대신 요청 스레드에서 쓴다.
+        실패하면 writer 를 닫지 않는다. 닫으면 버퍼가 flush 되고 gzip trailer 가 붙어서 잘린 파일이 정상 파일처럼 보인다.
+        예외를 그대로 던지면 아직 커밋 전이면 500 이 되고, 이미 커밋됐으면 컨테이너가 응답을 끝내지 않고 연결을 끊는다.
+     */
+    @GetMapping("/v1/members/export")
+    public void export(MemberSearchCondition condition, @RequestParam(defaultValue = "false") boolean gzip,
+                       HttpServletResponse response) throws IOException {
+        response.setContentType(gzip ? "application/gzip" : "text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(gzip ? "members.csv.gz" : "members.csv").build().toString());
+
+        OutputStream out = gzip
+                ? new GZIPOutputStream(response.getOutputStream(), EXPORT_BUFFER_SIZE)
+                : response.getOutputStream();
+        MemberCsvWriter writer = new MemberCsvWriter(out, EXPORT_BUFFER_SIZE);
+        writer.writeHeader();
+        memberJpaRepository.forEachSearch(condition, dto -> {
+            try {
+                writer.write(dto);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        //끝까지 쓴 경우에만 닫는다 (gzip 이면 여기서 trailer 를 쓴다)
+        writer.close();
+    }
+
+    //JSON 배열 또는 NDJSON 본문을 스트리밍으로 읽어서 chunk 단위로 저장한다
+    @PostMapping(value = "/members/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public BulkImportResult bulkImport(InputStream body) throws IOException {
+        return memberBulkImporter.importMembers(body);
+    }
+
+    //http://localhost:8080/members/suggest?prefix=mem&limit=10
+    //메모리 이름 인덱스에서 이름, id 순으로 limit 건 (인덱스 적재 전에는 DB like 조회)
+    @GetMapping("/members/suggest")
+    public List<MemberNameDto> suggest(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        if (prefix.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "prefix must not be empty");
+        }
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        return memberNameIndex.suggest(prefix, limit);
+    }
+
+    //검색 결과 캐시 적중률 / 제거 건수 확인용
+    @GetMapping("/v1/members/cache-stats")
+    public MemberSearchResultCache.Stats cacheStats() {
+        return memberSearchResultCache.getStats();
+    }
+
     @GetMapping("/v2/members")
     public Page<MemberTeamDto> members2(MemberSearchCondition condition, Pageable pageable) {
         return memberRepository.searchPageSimple(condition, pageable);
@@ -33,4 +147,70 @@ public class MemberController {
     public Page<MemberTeamDto> members3(MemberSearchCondition condition, Pageable pageable) {
         return memberRepository.searchPageComplex(condition, pageable);
     }
+
+    /*
+        http://localhost:8080/v5/members?teamName=teamA&page=0&size=20
+        v3 와 같은 결과를 비동기로 조회한다. 조회하는 동안 요청 스레드는 반환되고,
+        조회 대기열이 가득 차면 503 으로 바로 응답한다. (타임아웃은 spring.mvc.async.request-timeout)
+     */
+    @GetMapping("/v5/members")
+    public DeferredResult<Page<MemberTeamDto>> members5(MemberSearchCondition condition, Pageable pageable) {
+        return toDeferredResult(memberAsyncRepository.searchPageAsync(condition, pageable));
+    }
+
+    //http://localhost:8080/v4/members?teamName=teamA&size=20&cursor=...
+    @GetMapping("/v4/members")
+    public CursorSlice<MemberTeamDto> members4(MemberSearchCondition condition,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(defaultValue = "20") int size) {
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + MAX_SLICE_SIZE);
+        }
+        Slice<MemberTeamDto> slice = memberRepository.searchSlice(condition, decodeCursor(cursor), size);
+
+        List<MemberTeamDto> content = slice.getContent();
+        String nextCursor = slice.hasNext() ? encodeCursor(content.get(content.size() - 1).getMemberId()) : null;
+        return new CursorSlice<>(content, slice.hasNext(), nextCursor);
+    }
+
+    private <T> DeferredResult<T> toDeferredResult(CompletableFuture<T> future) {
+        DeferredResult<T> result = new DeferredResult<>();
+        //요청이 타임아웃되거나 실패하면 future 를 취소한다. 대기열에서 아직 시작하지 않은 조회는 실행하지 않고 건너뛴다
+        result.onTimeout(() -> future.cancel(true));
+        result.onError(e -> future.cancel(true));
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.setResult(value);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException) {
+                result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many pending queries", cause));
+            } else {
+                result.setErrorResult(cause);
+            }
+        });
+        return result;
+    }
+
+    //클라이언트에는 내부 id 구조를 노출하지 않도록 불투명한 토큰으로 전달
+    private String encodeCursor(Long lastMemberId) {
+        byte[] raw = (CURSOR_PREFIX + lastMemberId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    private Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException(raw);
+            }
+            return Long.valueOf(raw.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor", e);
+        }
+    }
 }
@@ -0,0 +1,158 @@
+package hello.querydsl.controller;
+
+import hello.querydsl.dto.MemberTeamDto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+    MemberTeamDto 를 CSV(RFC 4180, UTF-8) 로 쓴다. 요청마다 하나 만들고 스레드 간에 공유하지 않는다.
+    - 필드마다 String / byte[] 를 만들지 않고, 숫자는 자릿수를, 문자열은 UTF-8 바이트를 재사용하는 버퍼에 바로 쓴다.
+    - 버퍼가 차면 그만큼만 내보내므로 행 수와 상관없이 메모리 사용량이 일정하다.
+    - 쉼표, 큰따옴표, 줄바꿈이 들어간 문자열만 큰따옴표로 감싼다. null 은 빈 값.
+ */
+public class MemberCsvWriter implements Closeable {
+    private static final byte[] HEADER = "memberId,username,age,teamId,teamName\r\n".getBytes(StandardCharsets.US_ASCII);
+    //long 최대 자릿수 + 부호
+    private static final int MAX_LONG_LENGTH = 20;
+    //UTF-8 로 한 문자(서로게이트 쌍)의 최대 바이트 수
+    private static final int MAX_CHAR_LENGTH = 4;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position;
+
+    public MemberCsvWriter(OutputStream out, int bufferSize) {
+        if (bufferSize < HEADER.length) {
+            throw new IllegalArgumentException("bufferSize must be at least " + HEADER.length);
+        }
+        this.out = out;
+        this.buffer = new byte[bufferSize];
+    }
+
+    public void writeHeader() throws IOException {
+        ensure(HEADER.length);
+        System.arraycopy(HEADER, 0, buffer, position, HEADER.length);
+        position += HEADER.length;
+    }
+
+    public void write(MemberTeamDto dto) throws IOException {
+        writeLong(dto.getMemberId());
+        writeByte(',');
+        writeText(dto.getUsername());
+        writeByte(',');
+        writeLong(dto.getAge());
+        writeByte(',');
+        writeLong(dto.getTeamId());
+        writeByte(',');
+        writeText(dto.getTeamName());
+        writeByte('\r');
+        writeByte('\n');
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+
+    private void writeLong(Long value) throws IOException {
+        if (value != null) {
+            writeLong(value.longValue());
+        }
+    }
+
+    //Long.toString 처럼 뒤에서부터 채운다. 음수 쪽으로 계산해서 Long.MIN_VALUE 도 처리한다
+    private void writeLong(long value) throws IOException {
+        ensure(MAX_LONG_LENGTH);
+        long remaining = value < 0 ? value : -value;
+        int length = value < 0 ? 2 : 1;
+        for (long scaled = remaining / 10; scaled != 0; scaled /= 10) {
+            length++;
+        }
+        int index = position + length;
+        do {
+            buffer[--index] = (byte) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            buffer[--index] = '-';
+        }
+        position += length;
+    }
+
+    private void writeText(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = needsQuote(value);
+        if (quote) {
+            writeByte('"');
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            ensure(MAX_CHAR_LENGTH);
+            if (c < 0x80) {
+                if (c == '"') {
+                    buffer[position++] = '"';
+                }
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                //짝이 없는 서로게이트는 String.getBytes 와 같이 '?' 로 쓴다
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        if (quote) {
+            writeByte('"');
+        }
+    }
+
+    private static boolean needsQuote(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeByte(char c) throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) c;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (position + length > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package hello.querydsl.controller;
+
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.Team;
+import hello.querydsl.repository.MemberShardRepository;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongToIntFunction;
+
+/*
+    대량 샘플 데이터 적재용.
+    - hibernate.jdbc.batch_size + order_inserts 로 insert 를 JDBC batch 로 묶는다.
+    - chunkSize 건마다 flush/clear 후 commit 해서 영속성 컨텍스트와 트랜잭션이 커지지 않게 한다.
+    - 2차 캐시에는 올리지 않고, 회원은 setTeam 으로 팀만 지정하고 Team.members 컬렉션에는 추가하지 않는다.
+    - 샤드 모드(querydsl.sharding.enabled)면 기본 DB 대신 MemberShardRepository 로 샤드에 저장한다.
+    - skew 가 0 이면 팀마다 같은 수, 클수록 앞쪽 팀에 회원이 몰린다. (팀 i 의 가중치 = 1 / (i + 1)^skew)
+    - skew 가 0 이면 회원 i 는 팀 i % teamCount 에 넣는다. 기본값(팀 2개, 50명씩)이면 예전 InitMember 와 같이
+      member0..member99 가 teamA / teamB 에 번갈아 들어가고 나이는 0 ~ 99 이다.
+      skew 가 있으면 앞쪽 팀부터 distribute 한 수만큼 이어서 넣는다.
+ */
+@Slf4j
+@Component
+public class MemberDataLoader {
+    @PersistenceContext
+    private EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    //querydsl.sharding.enabled 일 때만 있다
+    private final MemberShardRepository memberShardRepository;
+
+    public MemberDataLoader(PlatformTransactionManager transactionManager,
+                            @Value("${querydsl.loader.chunk-size:1000}") int chunkSize,
+                            ObjectProvider<MemberShardRepository> memberShardRepository) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.memberShardRepository = memberShardRepository.getIfAvailable();
+    }
+
+    public LoadReport load(int teamCount, int membersPerTeam, double skew) {
+        long start = System.nanoTime();
+
+        List<Team> teams = memberShardRepository != null ? null : transactionTemplate.execute(status -> {
+            List<Team> created = new ArrayList<>();
+            for (int i = 0; i < teamCount; i++) {
+                Team team = new Team(teamName(i));
+                em.persist(team);
+                created.add(team);
+            }
+            return created;
+        });
+        List<Long> shardTeamIds = new ArrayList<>();
+        if (memberShardRepository != null) {
+            for (int i = 0; i < teamCount; i++) {
+                shardTeamIds.add(memberShardRepository.saveTeam(teamName(i)));
+            }
+        }
+
+        long total = (long) teamCount * membersPerTeam;
+        LongToIntFunction teamOf = assignment(distribute(total, teamCount, skew), skew);
+        long memberSeq = 0;
+        while (memberSeq < total) {
+            int size = (int) Math.min(chunkSize, total - memberSeq);
+            if (memberShardRepository != null) {
+                insertShardChunk(shardTeamIds, teamOf, memberSeq, size);
+            } else {
+                insertChunk(teams, teamOf, memberSeq, size);
+            }
+            memberSeq += size;
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        LoadReport report = new LoadReport(teamCount, memberSeq, elapsedNanos / 1_000_000);
+        log.info("member data loaded: teams={}, members={}, elapsed={}ms, rows/sec={}",
+                report.getTeams(), report.getMembers(), report.getElapsedMillis(), report.getRowsPerSecond());
+        return report;
+    }
+
+    private void insertChunk(List<Team> teams, LongToIntFunction teamOf, long firstSeq, int size) {
+        transactionTemplate.executeWithoutResult(status -> {
+            //적재한 회원을 2차 캐시에 올리지 않는다
+            em.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+            for (int i = 0; i < size; i++) {
+                long seq = firstSeq + i;
+                Member member = new Member("member" + seq, (int) (seq % 100), null);
+                member.setTeam(teams.get(teamOf.applyAsInt(seq)));
+                em.persist(member);
+            }
+            em.flush();
+            em.clear();
+        });
+    }
+
+    private void insertShardChunk(List<Long> teamIds, LongToIntFunction teamOf, long firstSeq, int size) {
+        List<MemberShardRepository.NewMember> members = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long seq = firstSeq + i;
+            members.add(new MemberShardRepository.NewMember("member" + seq, (int) (seq % 100),
+                    teamIds.get(teamOf.applyAsInt(seq))));
+        }
+        memberShardRepository.saveMembers(members);
+    }
+
+    static long[] distribute(long total, int teamCount, double skew) {
+        double[] weights = new double[teamCount];
+        double weightSum = 0;
+        for (int i = 0; i < teamCount; i++) {
+            weights[i] = 1.0 / Math.pow(i + 1, skew);
+            weightSum += weights[i];
+        }
+
+        long[] counts = new long[teamCount];
+        long assigned = 0;
+        for (int i = 0; i < teamCount; i++) {
+            counts[i] = (long) Math.floor(total * weights[i] / weightSum);
+            assigned += counts[i];
+        }
+        //반올림으로 남은 건수는 첫 번째 팀에 몰아준다
+        if (teamCount > 0) {
+            counts[0] += total - assigned;
+        }
+        return counts;
+    }
+
+    //회원 순번 -> 팀 번호. skew 가 0 이면 번갈아, 아니면 counts 만큼씩 앞쪽 팀부터
+    static LongToIntFunction assignment(long[] counts, double skew) {
+        if (skew == 0) {
+            return seq -> (int) (seq % counts.length);
+        }
+        long[] ends = new long[counts.length];
+        long end = 0;
+        for (int i = 0; i < counts.length; i++) {
+            end += counts[i];
+            ends[i] = end;
+        }
+        return seq -> {
+            //ends[i] > seq 인 첫 번째 팀 (회원이 0명인 팀은 건너뛴다)
+            int low = 0;
+            int high = ends.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ends[mid] > seq) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        };
+    }
+
+    private static String teamName(int index) {
+        return index < 26 ? "team" + (char) ('A' + index) : "team" + index;
+    }
+
+    @Data
+    public static class LoadReport {
+        private final int teams;
+        private final long members;
+        private final long elapsedMillis;
+
+        public long getRowsPerSecond() {
+            long rows = teams + members;
+            return elapsedMillis == 0 ? rows * 1000 : rows * 1000 / elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package hello.querydsl.controller;
+
+import hello.querydsl.monitor.IndexAdvisor;
+import hello.querydsl.monitor.RepositoryMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+@RestController
+public class MetricsController {
+    private final RepositoryMetrics repositoryMetrics;
+    private final IndexAdvisor indexAdvisor;
+
+    //리포지토리 메서드별 / 검색 조건 조합별 p50, p95, p99, max (마이크로초), 호출 수, 오류 수, row 수
+    @GetMapping("/metrics/repositories")
+    public Map<String, RepositoryMetrics.Snapshot> repositories() {
+        return repositoryMetrics.snapshot();
+    }
+
+    //실제 들어온 검색 조건 조합별 호출 수, H2 EXPLAIN 플랜, 인덱스 제안 (호출할 때 EXPLAIN 실행)
+    @GetMapping("/metrics/index-advice")
+    public List<IndexAdvisor.Advice> indexAdvice() {
+        return indexAdvisor.advise();
+    }
+}
@@ -0,0 +1,40 @@
+package hello.querydsl.controller;
+
+import hello.querydsl.dto.TeamMembersDto;
+import hello.querydsl.dto.TeamStatsDto;
+import hello.querydsl.repository.TeamRepository;
+import hello.querydsl.repository.TeamStatistics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+@RestController
+public class TeamController {
+    private final TeamRepository teamRepository;
+    private final TeamStatistics teamStatistics;
+
+    //http://localhost:8080/teams?page=0&size=10
+    @GetMapping("/teams")
+    public Page<TeamMembersDto> teams(Pageable pageable) {
+        return teamRepository.searchTeamsWithMembers(pageable);
+    }
+
+    //팀별 회원 수, 나이 합계 / 평균 / 최소 / 최대 (메모리 집계, 팀 수만큼만 읽는다)
+    @GetMapping("/teams/stats")
+    public List<TeamStatsDto> teamStats() {
+        return teamStatistics.getStatistics();
+    }
+
+    //DB 에서 group by 로 다시 집계한다
+    @PostMapping("/teams/stats/rebuild")
+    public List<TeamStatsDto> rebuildTeamStats() {
+        teamStatistics.rebuild();
+        return teamStatistics.getStatistics();
+    }
+}
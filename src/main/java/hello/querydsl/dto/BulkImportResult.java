@@ -0,0 +1,31 @@
+package hello.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkImportResult {
+    private long totalRows;
+    private long insertedRows;
+    private long failedRows;
+    private int chunks;
+    //오류가 있었던 chunk 만 담는다
+    private List<ChunkReport> failedChunks = new ArrayList<>();
+
+    @Data
+    public static class ChunkReport {
+        private final int chunk;
+        private final long firstRow;
+        private final long lastRow;
+        private long insertedRows;
+        private List<String> errors = new ArrayList<>();
+
+        public ChunkReport(int chunk, long firstRow, long lastRow) {
+            this.chunk = chunk;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+        }
+    }
+}
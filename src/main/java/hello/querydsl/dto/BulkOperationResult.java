@@ -0,0 +1,14 @@
+package hello.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkOperationResult {
+    private final int chunks;
+    private final long affectedRows;
+    private final long elapsedMillis;
+
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? affectedRows * 1000 : affectedRows * 1000 / elapsedMillis;
+    }
+}
@@ -0,0 +1,18 @@
+package hello.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CursorSlice<T> {
+    private List<T> content;
+    private boolean hasNext;
+    private String nextCursor;
+
+    public CursorSlice(List<T> content, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,18 @@
+package hello.querydsl.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class MemberBulkDto {
+    private String username;
+    private Integer age;
+    private String teamName;
+
+    public MemberBulkDto(String username, Integer age, String teamName) {
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+    }
+}
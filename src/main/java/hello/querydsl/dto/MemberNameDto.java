@@ -0,0 +1,14 @@
+package hello.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class MemberNameDto {
+    private Long memberId;
+    private String username;
+
+    public MemberNameDto(Long memberId, String username) {
+        this.memberId = memberId;
+        this.username = username;
+    }
+}
@@ -0,0 +1,26 @@
+package hello.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class TeamStatsDto {
+    private Long teamId;
+    private String teamName;
+    private long memberCount;
+    private long ageSum;
+    //회원이 없는 팀은 null
+    private Double ageAvg;
+    private Integer ageMin;
+    private Integer ageMax;
+
+    public TeamStatsDto(Long teamId, String teamName, long memberCount, long ageSum,
+                        Double ageAvg, Integer ageMin, Integer ageMax) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.memberCount = memberCount;
+        this.ageSum = ageSum;
+        this.ageAvg = ageAvg;
+        this.ageMin = ageMin;
+        this.ageMax = ageMax;
+    }
+}
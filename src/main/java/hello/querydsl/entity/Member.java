@@ -1,6 +1,8 @@
 package hello.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
@@ -8,10 +10,20 @@ import javax.persistence.*;
 @Setter
 @ToString(of = {"id", "username", "age"})
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Entity
+//검색 조건 컬럼 인덱스. team_id 는 (team_id, age) 복합 인덱스의 선두 컬럼으로 join 과 팀 + 나이 조건을 함께 커버한다
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_team_age", columnList = "team_id, age")
+})
 public class Member {
+    //allocationSize 만큼 id 를 미리 할당(pooled)해서 insert 마다 시퀀스를 조회하지 않는다
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
     private String username;
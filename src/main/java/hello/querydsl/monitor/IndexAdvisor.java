@@ -0,0 +1,195 @@
+package hello.querydsl.monitor;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    실제로 들어온 MemberSearchCondition 조건 조합(shape)별 호출 수를 기록하고,
+    조합마다 검색 쿼리와 같은 모양의 SQL 을 H2 EXPLAIN 으로 확인해서 table scan 이 남아 있으면 인덱스를 제안한다.
+    - EXPLAIN 은 advise() 를 호출할 때만 실행한다. (요청 경로에서는 카운터만 올린다)
+    - 실제 검색 쿼리처럼 조건 값은 바인딩 파라미터로 넘긴다. (리터럴을 쓰면 옵티마이저가 값에 맞춘 플랜을 고를 수 있다)
+    - member left join team 이므로 팀 이름 조건만 있는 조합은 member 가 항상 먼저 스캔된다. 이 경우 인덱스가 아니라 inner join 이 해법이다.
+    - 이미 있는 인덱스(JDBC 메타데이터, H2 는 INFORMATION_SCHEMA)가 제안할 컬럼으로 시작하면 DDL 을 내지 않고,
+      그런데도 table scan 이면 그 인덱스가 쓰이지 않는다고 알려준다. 제안하는 인덱스 이름이 이미 있으면 뒤에 번호를 붙인다.
+ */
+@Slf4j
+public class IndexAdvisor {
+    private static final String NONE = "none";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, LongAdder> shapes = new ConcurrentHashMap<>();
+
+    public IndexAdvisor(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void record(MemberSearchCondition condition) {
+        shapes.computeIfAbsent(RepositoryMetrics.shapeOf(condition), k -> new LongAdder()).increment();
+    }
+
+    //호출이 많은 조합부터
+    public List<Advice> advise() {
+        List<Advice> result = new ArrayList<>();
+        shapes.forEach((shape, calls) -> result.add(adviceOf(shape, calls.sum())));
+        result.sort(Comparator.comparingLong(Advice::getCalls).reversed());
+        return result;
+    }
+
+    public void reset() {
+        shapes.clear();
+    }
+
+    private Advice adviceOf(String shape, long calls) {
+        List<String> fields = NONE.equals(shape) ? List.of() : Arrays.asList(shape.split(","));
+        Advice advice = new Advice(shape, calls);
+        try {
+            String plan = jdbcTemplate.queryForObject("explain " + sqlOf(fields), String.class, argsOf(fields));
+            advice.plan = plan;
+            suggest(advice, fields, plan.toUpperCase(Locale.ROOT), existingIndexes());
+        } catch (DataAccessException e) {
+            log.debug("explain failed for shape {}", shape, e);
+            advice.plan = "explain failed: " + e.getMostSpecificCause().getMessage();
+        }
+        return advice;
+    }
+
+    //MemberSearchQueryCache 가 만드는 검색 쿼리와 같은 join / where 구조
+    static String sqlOf(List<String> fields) {
+        StringBuilder sql = new StringBuilder(
+                "select m.member_id from member m left outer join team t on m.team_id = t.team_id");
+        StringJoiner where = new StringJoiner(" and ", " where ", "").setEmptyValue("");
+        if (fields.contains("username")) {
+            where.add("m.username = ?");
+        }
+        if (fields.contains("teamName")) {
+            where.add("t.name = ?");
+        }
+        if (fields.contains("ageGoe")) {
+            where.add("m.age >= ?");
+        }
+        if (fields.contains("ageLoe")) {
+            where.add("m.age <= ?");
+        }
+        return sql.append(where).toString();
+    }
+
+    //sqlOf 의 ? 순서. 값은 플랜에 쓰이지 않는다
+    static Object[] argsOf(List<String> fields) {
+        List<Object> args = new ArrayList<>();
+        if (fields.contains("username")) {
+            args.add("x");
+        }
+        if (fields.contains("teamName")) {
+            args.add("x");
+        }
+        if (fields.contains("ageGoe")) {
+            args.add(0);
+        }
+        if (fields.contains("ageLoe")) {
+            args.add(0);
+        }
+        return args.toArray();
+    }
+
+    //테이블 이름 -> (인덱스 이름 -> 컬럼 목록), 모두 소문자
+    private Map<String, Map<String, List<String>>> existingIndexes() {
+        Map<String, Map<String, List<String>>> indexes = new HashMap<>();
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String table : List.of("member", "team")) {
+                String name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+                Map<String, List<String>> tableIndexes = indexes.computeIfAbsent(table, key -> new HashMap<>());
+                try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), name, false, true)) {
+                    while (rs.next()) {
+                        String indexName = rs.getString("INDEX_NAME");
+                        String column = rs.getString("COLUMN_NAME");
+                        if (indexName == null || column == null) {
+                            continue;
+                        }
+                        List<String> columns = tableIndexes.computeIfAbsent(indexName.toLowerCase(Locale.ROOT), key -> new ArrayList<>());
+                        int position = rs.getInt("ORDINAL_POSITION");
+                        while (columns.size() < position) {
+                            columns.add(null);
+                        }
+                        columns.set(position - 1, column.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            return null;
+        });
+        return indexes;
+    }
+
+    static void suggest(Advice advice, List<String> fields, String plan, Map<String, Map<String, List<String>>> existing) {
+        boolean memberScan = plan.contains("MEMBER.TABLESCAN");
+        boolean teamScan = plan.contains("TEAM.TABLESCAN");
+        advice.tableScan = memberScan || teamScan;
+
+        //동등 조건 컬럼을 앞에, 범위 조건(age)을 뒤에 둔다
+        List<String> memberColumns = new ArrayList<>();
+        if (fields.contains("username")) {
+            memberColumns.add("username");
+        }
+        if (fields.contains("ageGoe") || fields.contains("ageLoe")) {
+            memberColumns.add("age");
+        }
+
+        if (memberScan && !memberColumns.isEmpty()) {
+            suggestIndex(advice, "member", memberColumns, existing.getOrDefault("member", Map.of()));
+        } else if (memberScan && fields.contains("teamName")) {
+            advice.suggestions.add("member is scanned because only team.name is filtered through a left join;"
+                    + " use an inner join so the team.name index can drive the query");
+        }
+        if (teamScan && fields.contains("teamName")) {
+            suggestIndex(advice, "team", List.of("name"), existing.getOrDefault("team", Map.of()));
+        }
+    }
+
+    private static void suggestIndex(Advice advice, String table, List<String> columns, Map<String, List<String>> existing) {
+        for (Map.Entry<String, List<String>> index : existing.entrySet()) {
+            List<String> indexColumns = index.getValue();
+            if (indexColumns.size() >= columns.size() && indexColumns.subList(0, columns.size()).equals(columns)) {
+                advice.suggestions.add(index.getKey() + " already covers " + table + " (" + String.join(", ", columns)
+                        + ") but the plan scans " + table + "; check statistics (analyze) or the condition types");
+                return;
+            }
+        }
+        String baseName = "idx_" + table + "_" + String.join("_", columns);
+        String name = baseName;
+        for (int suffix = 2; existing.containsKey(name); suffix++) {
+            name = baseName + "_" + suffix;
+        }
+        advice.suggestions.add("create index " + name + " on " + table + " (" + String.join(", ", columns) + ")");
+    }
+
+    @Getter
+    public static class Advice {
+        private final String shape;
+        private final long calls;
+        private String plan;
+        private boolean tableScan;
+        private final List<String> suggestions = new ArrayList<>();
+
+        Advice(String shape, long calls) {
+            this.shape = shape;
+            this.calls = calls;
+        }
+    }
+}
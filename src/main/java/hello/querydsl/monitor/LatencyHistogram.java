@@ -0,0 +1,69 @@
+package hello.querydsl.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 락 없이 기록하는 마이크로초 단위 지연시간 히스토그램.
+ * 2의 거듭제곱 구간을 다시 4개로 나눈 버킷을 쓰므로 백분위 값의 오차는 버킷 폭(최대 약 25%) 이내이다.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 160;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros) {
+        counts.incrementAndGet(bucketOf(micros));
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    //percentile: 0 ~ 100. 해당 버킷의 상한값을 돌려준다
+    public long percentileMicros(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exp - 2)) & (SUB_BUCKETS - 1);
+        return Math.min((exp - 1) * SUB_BUCKETS + sub, BUCKETS - 1);
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKETS + 1;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exp - 2);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+}
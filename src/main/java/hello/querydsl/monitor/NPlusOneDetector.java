@@ -0,0 +1,55 @@
+package hello.querydsl.monitor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+import java.util.Map;
+
+/*
+    반복 횟수는 entity / 컬렉션을 하나씩 읽는 select 만 센다. 아래는 같은 SQL 이 반복돼도 N+1 이 아니다.
+    - insert / update / delete (JDBC batch 로 같은 문장이 반복된다)
+    - 시퀀스 호출
+    - in (...) 으로 여러 건을 읽는 조회 (batch fetch, chunk 조회)
+    - limit / offset 으로 잘라 읽는 조회 (keyset chunk, 페이징)
+    FAIL 모드에서는 반복 횟수가 threshold 에 닿는 SQL 에서 바로 예외를 던진다.
+    그 SQL 을 실행한 트랜잭션이 커밋되기 전에 실패해야 하기 때문이다.
+ */
+@Slf4j
+public class NPlusOneDetector {
+    private final SqlMonitorProperties properties;
+
+    public NPlusOneDetector(SqlMonitorProperties properties) {
+        this.properties = properties;
+    }
+
+    static boolean isLoad(String sql) {
+        String lower = sql.trim().toLowerCase(Locale.ROOT);
+        return lower.startsWith("select")
+                && !lower.contains("next value for")
+                && !lower.contains("nextval")
+                && !lower.contains(" in (")
+                && !lower.contains(" limit ")
+                && !lower.contains(" offset ")
+                && !lower.contains(" fetch first ");
+    }
+
+    //SqlScope 가 load 문장을 기록할 때마다 호출한다
+    void onLoad(SqlScope scope, String sql, int count) {
+        if (properties.getMode() == SqlMonitorProperties.Mode.FAIL && count == properties.getRepeatThreshold()) {
+            throw new IllegalStateException("N+1 suspected in " + scope + ": " + sql + " x" + count);
+        }
+    }
+
+    public void check(SqlScope scope) {
+        Map<String, Integer> repeated = scope.getRepeatedStatements(properties.getRepeatThreshold());
+        if (repeated.isEmpty()) {
+            log.debug("{}", scope);
+            return;
+        }
+        String message = "N+1 suspected in " + scope + ": " + repeated;
+        if (properties.getMode() == SqlMonitorProperties.Mode.FAIL) {
+            throw new IllegalStateException(message);
+        }
+        log.warn(message);
+    }
+}
@@ -0,0 +1,81 @@
+package hello.querydsl.monitor;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import lombok.Value;
+
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 리포지토리 메서드별, MemberSearchCondition 조건 조합(shape)별 호출 수 / 오류 수 / row 수 / 지연시간 히스토그램.
+ * 기록은 LongAdder, AtomicLongArray 만 사용해서 락이 없다.
+ */
+public class RepositoryMetrics {
+    private final Map<String, MethodMetrics> metrics = new ConcurrentHashMap<>();
+
+    public void record(String name, long nanos, long rows, boolean error) {
+        metrics.computeIfAbsent(name, key -> new MethodMetrics()).record(nanos, rows, error);
+    }
+
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshot = new TreeMap<>();
+        metrics.forEach((name, method) -> snapshot.put(name, method.snapshot()));
+        return snapshot;
+    }
+
+    //예: "teamName,ageGoe", 조건이 없으면 "none"
+    public static String shapeOf(MemberSearchCondition condition) {
+        StringJoiner shape = new StringJoiner(",");
+        if (hasText(condition.getUsername())) {
+            shape.add("username");
+        }
+        if (hasText(condition.getTeamName())) {
+            shape.add("teamName");
+        }
+        if (condition.getAgeGoe() != null) {
+            shape.add("ageGoe");
+        }
+        if (condition.getAgeLoe() != null) {
+            shape.add("ageLoe");
+        }
+        return shape.length() == 0 ? "none" : shape.toString();
+    }
+
+    static class MethodMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(long nanos, long rowCount, boolean error) {
+            calls.increment();
+            if (error) {
+                errors.increment();
+            }
+            rows.add(rowCount);
+            latency.record(nanos / 1_000);
+        }
+
+        Snapshot snapshot() {
+            return new Snapshot(calls.sum(), errors.sum(), rows.sum(),
+                    latency.percentileMicros(50), latency.percentileMicros(95), latency.percentileMicros(99),
+                    latency.getMaxMicros());
+        }
+    }
+
+    @Value
+    public static class Snapshot {
+        long calls;
+        long errors;
+        long rows;
+        long p50Micros;
+        long p95Micros;
+        long p99Micros;
+        long maxMicros;
+    }
+}
@@ -0,0 +1,78 @@
+package hello.querydsl.monitor;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.domain.Slice;
+import org.springframework.util.ClassUtils;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/*
+    리포지토리 메서드 호출 하나 동안의 SQL 을 집계하고(N+1 검사),
+    지연시간 / 호출 수 / 오류 수 / 결과 row 수를 메서드별, 검색 조건 조합별로 기록한다.
+    검색 조건 조합은 인덱스 제안을 위해 IndexAdvisor 에도 기록한다.
+ */
+@Aspect
+public class RepositoryMonitorAspect {
+    private final NPlusOneDetector detector;
+    private final RepositoryMetrics metrics;
+    private final IndexAdvisor indexAdvisor;
+
+    public RepositoryMonitorAspect(NPlusOneDetector detector, RepositoryMetrics metrics, IndexAdvisor indexAdvisor) {
+        this.detector = detector;
+        this.metrics = metrics;
+        this.indexAdvisor = indexAdvisor;
+    }
+
+    @Around("execution(public * *(..)) && (@within(org.springframework.stereotype.Repository) " +
+            "|| target(org.springframework.data.repository.Repository))")
+    public Object monitor(ProceedingJoinPoint joinPoint) throws Throwable {
+        String name = repositoryName(joinPoint.getTarget()) + "." + joinPoint.getSignature().getName();
+        long start = System.nanoTime();
+        Object result = null;
+        boolean error = true;
+        try (SqlScope scope = SqlCounter.open(name, detector)) {
+            result = joinPoint.proceed();
+            //FAIL 모드에서 N+1 로 예외가 나면 오류로 기록한다
+            detector.check(scope);
+            error = false;
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            long rows = rowsOf(result);
+            metrics.record(name, nanos, rows, error);
+            for (Object arg : joinPoint.getArgs()) {
+                if (arg instanceof MemberSearchCondition) {
+                    metrics.record(name + "[" + RepositoryMetrics.shapeOf((MemberSearchCondition) arg) + "]", nanos, rows, error);
+                    indexAdvisor.record((MemberSearchCondition) arg);
+                }
+            }
+        }
+    }
+
+    //spring data 리포지토리는 JDK 프록시이므로 프로젝트의 리포지토리 인터페이스 이름을 쓴다
+    static String repositoryName(Object target) {
+        for (Class<?> type : ClassUtils.getAllInterfaces(target)) {
+            if (type.getName().startsWith("hello.querydsl.")) {
+                return type.getSimpleName();
+            }
+        }
+        return ClassUtils.getUserClass(target).getSimpleName();
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        return 0;
+    }
+}
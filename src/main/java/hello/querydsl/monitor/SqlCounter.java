@@ -0,0 +1,69 @@
+package hello.querydsl.monitor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 현재 스레드에서 열려 있는 SqlScope 들에 SQL 실행을 기록한다.
+ * hibernate StatementInspector(SQL 문장)와 SqlCountingDataSource(row 수, JDBC 실행 시간, 켜져 있을 때만)가 호출한다.
+ */
+public final class SqlCounter {
+    private static final ThreadLocal<Deque<SqlScope>> SCOPES = new ThreadLocal<>();
+
+    private SqlCounter() {
+    }
+
+    public static SqlScope open(String name) {
+        return open(name, null);
+    }
+
+    //detector 가 있으면 FAIL 모드에서 반복 select 를 실행하는 순간 예외를 던진다
+    public static SqlScope open(String name, NPlusOneDetector detector) {
+        Deque<SqlScope> scopes = SCOPES.get();
+        if (scopes == null) {
+            scopes = new ArrayDeque<>();
+            SCOPES.set(scopes);
+        }
+        Deque<SqlScope> opened = scopes;
+        SqlScope[] holder = new SqlScope[1];
+        holder[0] = new SqlScope(name, detector, () -> {
+            opened.remove(holder[0]);
+            //서블릿 스레드는 풀에서 재사용되므로 마지막 scope 가 닫히면 ThreadLocal 을 비운다
+            if (opened.isEmpty()) {
+                SCOPES.remove();
+            }
+        });
+        scopes.push(holder[0]);
+        return holder[0];
+    }
+
+    static void onStatement(String sql) {
+        Deque<SqlScope> scopes = SCOPES.get();
+        if (scopes == null) {
+            return;
+        }
+        for (SqlScope scope : scopes) {
+            scope.onStatement(sql);
+        }
+    }
+
+    static void onRow() {
+        Deque<SqlScope> scopes = SCOPES.get();
+        if (scopes == null) {
+            return;
+        }
+        for (SqlScope scope : scopes) {
+            scope.onRow();
+        }
+    }
+
+    static void onExecute(long nanos) {
+        Deque<SqlScope> scopes = SCOPES.get();
+        if (scopes == null) {
+            return;
+        }
+        for (SqlScope scope : scopes) {
+            scope.onExecute(nanos);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package hello.querydsl.monitor;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connection -> Statement -> ResultSet 을 위임 클래스(CountingConnection 등)로 감싸서 JDBC 실행 시간과 읽은 row 수를 SqlCounter 에 기록한다.
+ * querydsl.sql-monitor.enabled=true 일 때만 DataSource 빈을 감싼다.
+ */
+public class SqlCountingDataSource extends DelegatingDataSource {
+    public SqlCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new CountingConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return new CountingConnection(super.getConnection(username, password));
+    }
+}
@@ -0,0 +1,11 @@
+package hello.querydsl.monitor;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+public class SqlCountingStatementInspector implements StatementInspector {
+    @Override
+    public String inspect(String sql) {
+        SqlCounter.onStatement(sql);
+        return sql;
+    }
+}
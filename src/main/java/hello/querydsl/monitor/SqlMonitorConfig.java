@@ -0,0 +1,69 @@
+package hello.querydsl.monitor;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/*
+    SQL 문장 수 / row 수 / JDBC 시간을 HTTP 요청과 리포지토리 메서드 단위로 집계하고 N+1 을 찾는다.
+    리포지토리 메서드의 지연시간 히스토그램은 RepositoryMetrics 에 쌓고 /metrics/repositories 로 조회한다.
+    검색 조건 조합별 인덱스 제안은 IndexAdvisor 가 만들고 /metrics/index-advice 로 조회한다.
+    - SQL 문장: hibernate StatementInspector
+    - row 수, JDBC 시간: DataSource 래퍼 (querydsl.sql-monitor.enabled=true 일 때만, 기본은 꺼짐)
+ */
+@Configuration
+@EnableConfigurationProperties(SqlMonitorProperties.class)
+public class SqlMonitorConfig {
+    @Bean
+    public NPlusOneDetector nPlusOneDetector(SqlMonitorProperties properties) {
+        return new NPlusOneDetector(properties);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlCountingStatementInspector() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlCountingStatementInspector());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "querydsl.sql-monitor", name = "enabled", havingValue = "true")
+    public static BeanPostProcessor sqlCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof SqlCountingDataSource)) {
+                    return new SqlCountingDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlMonitorFilter> sqlMonitorFilter(NPlusOneDetector detector) {
+        return new FilterRegistrationBean<>(new SqlMonitorFilter(detector));
+    }
+
+    @Bean
+    public RepositoryMetrics repositoryMetrics() {
+        return new RepositoryMetrics();
+    }
+
+    @Bean
+    public IndexAdvisor indexAdvisor(JdbcTemplate jdbcTemplate) {
+        return new IndexAdvisor(jdbcTemplate);
+    }
+
+    @Bean
+    public RepositoryMonitorAspect repositoryMonitorAspect(NPlusOneDetector detector, RepositoryMetrics repositoryMetrics,
+                                                           IndexAdvisor indexAdvisor) {
+        return new RepositoryMonitorAspect(detector, repositoryMetrics, indexAdvisor);
+    }
+}
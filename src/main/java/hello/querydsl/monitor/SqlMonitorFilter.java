@@ -0,0 +1,27 @@
+package hello.querydsl.monitor;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+//HTTP 요청 하나 동안의 SQL 을 집계한다 (요청 스레드에서 실행된 SQL 만)
+public class SqlMonitorFilter extends OncePerRequestFilter {
+    private final NPlusOneDetector detector;
+
+    public SqlMonitorFilter(NPlusOneDetector detector) {
+        this.detector = detector;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (SqlScope scope = SqlCounter.open(request.getMethod() + " " + request.getRequestURI(), detector)) {
+            filterChain.doFilter(request, response);
+            detector.check(scope);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package hello.querydsl.monitor;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("querydsl.sql-monitor")
+public class SqlMonitorProperties {
+    //DataSource 를 감싸서 row 수 / JDBC 시간을 집계할지 (문장 수와 N+1 검사는 항상 켜져 있다)
+    private boolean enabled = false;
+    //같은 SQL 이 이 횟수 이상 반복되면 N+1 로 본다
+    private int repeatThreshold = 5;
+    //LOG: 경고 로그, FAIL: 예외 (개발/테스트용)
+    private Mode mode = Mode.LOG;
+
+    public enum Mode {
+        LOG, FAIL
+    }
+}
@@ -0,0 +1,89 @@
+package hello.querydsl.monitor;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HTTP 요청 / 리포지토리 메서드 / 테스트 하나 동안 실행된 SQL 통계.
+ * SqlCounter.open 으로 열고 close 로 닫는다. 같은 스레드에서 열린 scope 들은 중첩해서 함께 집계된다.
+ */
+public class SqlScope implements AutoCloseable {
+    private final String name;
+    private final NPlusOneDetector detector;
+    private final Runnable onClose;
+    private int statements;
+    private long rows;
+    private long jdbcNanos;
+    //? 바인딩 자리만 다른 같은 SQL 은 같은 문자열이므로 반복 횟수로 N+1 을 찾는다 (entity / 컬렉션 load 만, NPlusOneDetector.isLoad)
+    private final Map<String, Integer> statementCounts = new HashMap<>();
+
+    SqlScope(String name, NPlusOneDetector detector, Runnable onClose) {
+        this.name = name;
+        this.detector = detector;
+        this.onClose = onClose;
+    }
+
+    void onStatement(String sql) {
+        statements++;
+        if (!NPlusOneDetector.isLoad(sql)) {
+            return;
+        }
+        int count = statementCounts.merge(sql, 1, Integer::sum);
+        if (detector != null) {
+            detector.onLoad(this, sql, count);
+        }
+    }
+
+    void onRow() {
+        rows++;
+    }
+
+    void onExecute(long nanos) {
+        jdbcNanos += nanos;
+    }
+
+    public void reset() {
+        statements = 0;
+        rows = 0;
+        jdbcNanos = 0;
+        statementCounts.clear();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStatementCount() {
+        return statements;
+    }
+
+    public long getRowCount() {
+        return rows;
+    }
+
+    public long getJdbcMillis() {
+        return jdbcNanos / 1_000_000;
+    }
+
+    //threshold 번 이상 반복된 load SQL -> 반복 횟수
+    public Map<String, Integer> getRepeatedStatements(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        statementCounts.forEach((sql, count) -> {
+            if (count >= threshold) {
+                repeated.put(sql, count);
+            }
+        });
+        return repeated;
+    }
+
+    @Override
+    public void close() {
+        onClose.run();
+    }
+
+    @Override
+    public String toString() {
+        return name + " [statements=" + statements + ", rows=" + rows + ", jdbc=" + getJdbcMillis() + "ms]";
+    }
+}
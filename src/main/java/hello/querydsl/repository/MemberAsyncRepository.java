@@ -0,0 +1,37 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.repository.support.AsyncQueryExecutor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/*
+    MemberRepositoryCustom 검색의 비동기 버전.
+    조회는 AsyncQueryExecutor 의 전용 스레드에서 읽기 전용 트랜잭션으로 실행되므로 호출 스레드는 바로 반환된다.
+    대기열이 가득 차면 RejectedExecutionException 으로 실패한 future 가 반환된다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MemberAsyncRepository {
+    private final MemberRepository memberRepository;
+    private final AsyncQueryExecutor asyncQueryExecutor;
+
+    public CompletableFuture<List<MemberTeamDto>> searchAsync(MemberSearchCondition condition) {
+        return asyncQueryExecutor.submit(() -> memberRepository.search(condition));
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPageAsync(MemberSearchCondition condition, Pageable pageable) {
+        return asyncQueryExecutor.submit(() -> memberRepository.searchPageComplex(condition, pageable));
+    }
+
+    public CompletableFuture<Slice<MemberTeamDto>> searchSliceAsync(MemberSearchCondition condition, Long lastMemberId, int size) {
+        return asyncQueryExecutor.submit(() -> memberRepository.searchSlice(condition, lastMemberId, size));
+    }
+}
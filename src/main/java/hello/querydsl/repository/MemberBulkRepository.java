@@ -0,0 +1,176 @@
+package hello.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import hello.querydsl.dto.BulkOperationResult;
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.entity.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import static hello.querydsl.entity.QMember.member;
+import static hello.querydsl.entity.QTeam.team;
+import static hello.querydsl.repository.MemberSearchPredicates.ageGoe;
+import static hello.querydsl.repository.MemberSearchPredicates.ageLoe;
+import static hello.querydsl.repository.MemberSearchPredicates.memberIdGt;
+import static hello.querydsl.repository.MemberSearchPredicates.teamNameEq;
+import static hello.querydsl.repository.MemberSearchPredicates.usernameEq;
+
+/*
+    MemberSearchCondition 으로 고른 회원을 id 구간(chunk) 단위로 벌크 update/delete 한다.
+    - member.id 순으로 chunkSize 건씩 id 를 조회한 뒤 "where id in (...)" 으로 실행하고, 트랜잭션 밖에서 호출하면 chunk 마다 커밋한다.
+      한 번에 전체 행을 잠그지 않는다.
+    - 이미 트랜잭션 안에서 호출하면 chunk 는 그 트랜잭션에 참여하고, 현재 영속성 컨텍스트에서 대상 회원만 detach 한다.
+      (QuerydslBasicTest.bulkUpdate 처럼 flush/clear 로 전체를 비울 필요가 없다)
+    - 검색 결과 캐시는 영향받은 팀만 무효화한다. 2차 캐시는 hibernate 가 벌크 연산 시 Member region 을 비운다.
+      setter 가 team 을 바꿀 수 있으므로 update 후 chunk 의 팀 이름을 다시 읽어 이전 팀과 바뀐 팀을 모두 무효화한다.
+    - 이름 인덱스(MemberNameIndex)에는 chunk 의 id 만 반영한다.
+ */
+@Slf4j
+@Repository
+public class MemberBulkRepository {
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final MemberSearchResultCache resultCache;
+    private final MemberNameIndex memberNameIndex;
+    private final MemberColumnStore memberColumnStore;
+    private final TeamStatistics teamStatistics;
+
+    public MemberBulkRepository(EntityManager em, PlatformTransactionManager transactionManager,
+                                MemberSearchResultCache resultCache, MemberNameIndex memberNameIndex,
+                                MemberColumnStore memberColumnStore, TeamStatistics teamStatistics) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.resultCache = resultCache;
+        this.memberNameIndex = memberNameIndex;
+        this.memberColumnStore = memberColumnStore;
+        this.teamStatistics = teamStatistics;
+    }
+
+    public BulkOperationResult bulkUpdate(MemberSearchCondition condition, int chunkSize, UnaryOperator<JPAUpdateClause> setter) {
+        return execute(condition, chunkSize, (ids, teamNames) -> {
+            long count = setter.apply(queryFactory.update(member))
+                    .where(member.id.in(ids))
+                    .execute();
+            //username 을 바꿨을 수 있으므로 chunk 의 이름을 다시 읽어 이름 인덱스에 알린다
+            memberNameIndex.refresh(ids);
+            //team 을 바꿨을 수 있으므로 바뀐 뒤의 팀도 무효화 대상에 넣는다
+            teamNames.addAll(queryFactory
+                    .select(team.name).distinct()
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(member.id.in(ids))
+                    .fetch());
+            return count;
+        });
+    }
+
+    public BulkOperationResult bulkDelete(MemberSearchCondition condition, int chunkSize) {
+        return execute(condition, chunkSize, (ids, teamNames) -> {
+            long count = queryFactory
+                    .delete(member)
+                    .where(member.id.in(ids))
+                    .execute();
+            memberNameIndex.removedAll(ids);
+            return count;
+        });
+    }
+
+    private BulkOperationResult execute(MemberSearchCondition condition, int chunkSize, ChunkStatement statement) {
+        long start = System.nanoTime();
+        boolean joinedTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        int chunks = 0;
+        long affected = 0;
+        Long lastMemberId = null;
+
+        while (true) {
+            Long from = lastMemberId;
+            ChunkResult chunk = transactionTemplate.execute(status -> {
+                List<Tuple> targets = queryFactory
+                        .select(member.id, team.name)
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                memberIdGt(from),
+                                usernameEq(condition.getUsername()),
+                                teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe())
+                        )
+                        .orderBy(member.id.asc())
+                        .limit(chunkSize)
+                        .fetch();
+                if (targets.isEmpty()) {
+                    return null;
+                }
+
+                List<Long> ids = targets.stream().map(t -> t.get(member.id)).collect(Collectors.toList());
+                Set<String> teamNames = new HashSet<>();
+                for (Tuple target : targets) {
+                    teamNames.add(target.get(team.name));
+                }
+                long count = statement.execute(ids, teamNames);
+
+                if (joinedTransaction) {
+                    detach(ids);
+                }
+                teamNames.forEach(resultCache::invalidateTeam);
+                memberColumnStore.markChanged();
+                teamStatistics.markStale();
+                return new ChunkResult(ids.get(ids.size() - 1), count, ids.size() < chunkSize);
+            });
+
+            if (chunk == null) {
+                break;
+            }
+            chunks++;
+            affected += chunk.affected;
+            lastMemberId = chunk.lastMemberId;
+            if (chunk.last) {
+                break;
+            }
+        }
+
+        BulkOperationResult result = new BulkOperationResult(chunks, affected, (System.nanoTime() - start) / 1_000_000);
+        log.info("member bulk operation: chunks={}, affected={}, elapsed={}ms, rows/sec={}",
+                result.getChunks(), result.getAffectedRows(), result.getElapsedMillis(), result.getRowsPerSecond());
+        return result;
+    }
+
+    //getReference 는 이미 관리 중인 엔티티면 그것을, 아니면 프록시를 돌려주므로 SQL 없이 대상만 detach 할 수 있다
+    private void detach(List<Long> ids) {
+        for (Long id : ids) {
+            em.detach(em.getReference(Member.class, id));
+        }
+    }
+
+    //teamNames: chunk 의 변경 전 팀 이름. 다른 팀에 영향을 주는 statement 는 여기에 더한다
+    private interface ChunkStatement {
+        long execute(List<Long> ids, Set<String> teamNames);
+    }
+
+    private static class ChunkResult {
+        private final Long lastMemberId;
+        private final long affected;
+        private final boolean last;
+
+        private ChunkResult(Long lastMemberId, long affected, boolean last) {
+            this.lastMemberId = lastMemberId;
+            this.affected = affected;
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.repository.support.TransactionBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/*
+    MemberTeamDto 검색용 메모리 컬럼 복제본 (MemberColumns). querydsl.column-store.enabled 로 켠다.
+    - 기동이 끝나면(ApplicationReadyEvent) 백그라운드 스레드가 DB 에서 스냅샷을 만든다.
+    - 엔티티 변경(저장/변경/삭제, 팀 추가/이름 변경)은 MemberColumnStoreListener 가 행 단위로 알려준다.
+      트랜잭션마다 모아 두었다가 커밋된 뒤에 apply 로 스냅샷 위에 쌓으므로 비용은 변경 건수에만 비례하고, 복제본은 계속 최신이다.
+      변경이 쌓이면 백그라운드에서 배열로 합친다(compact). 그동안 반영된 변경은 결과 위에 다시 올린다. (MemberNameIndex 와 같은 방식)
+    - 어떤 행이 바뀌었는지 모르는 벌크 연산은 markChanged 로 알린다. 커밋되면 변경 버전을 올리고 DB 에서 다시 만든다.
+      스냅샷의 버전이 현재 변경 버전과 같을 때(fresh)만 검색에 쓰고, 아니면 Optional.empty() 로 DB 조회를 하게 한다.
+      다시 만드는 동안 커밋된 엔티티 변경은 읽은 결과 위에 다시 반영한다. (변경은 행 단위 값이므로 두 번 반영해도 같다)
+    - 쓰기 트랜잭션 안에서는 아직 커밋하지 않은 자기 변경이 보여야 하므로 쓰지 않는다.
+    - 주의: JPQL / Querydsl / native 벌크 update, delete 는 hibernate 이벤트가 없으므로 반드시 MemberJpaRepository.executeBulk 로 실행하거나
+      커밋한 뒤 markChanged 를 직접 불러야 한다. 그렇지 않으면 스냅샷이 최신이라고 판단해서 지워지거나 바뀐 행을 계속 돌려준다.
+ */
+@Slf4j
+@Component
+public class MemberColumnStore {
+    @PersistenceContext
+    private EntityManager em;
+    private final boolean enabled;
+    private final TransactionTemplate loadTransaction;
+    //다시 만들기와 compact 를 실행하는 스레드 하나
+    private final ExecutorService rebuilder;
+    private final AtomicLong changeVersion = new AtomicLong();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final Object lock = new Object();
+    private volatile MemberColumns columns;
+    //아래는 lock 으로 보호
+    private boolean compacting;
+    //다시 만드는 중에 커밋된 변경, 다시 만드는 중이 아니면 null
+    private List<Changes> replay;
+    //변경은 트랜잭션마다 하나의 Changes 에 모았다가 커밋된 뒤에 반영한다
+    private final TransactionBuffer<Changes> pendingChanges = TransactionBuffer.afterCommit(Changes::new, this::committed);
+
+    public MemberColumnStore(PlatformTransactionManager transactionManager,
+                             @Value("${querydsl.column-store.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+        this.rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-column-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        scheduleRebuild();
+    }
+
+    public Optional<List<MemberTeamDto>> search(MemberSearchCondition condition) {
+        MemberColumns current = columns;
+        if (current == null || current.getVersion() != changeVersion.get()) {
+            return Optional.empty();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Optional.empty();
+        }
+        return Optional.of(current.search(condition));
+    }
+
+    public boolean isFresh() {
+        MemberColumns current = columns;
+        return current != null && current.getVersion() == changeVersion.get();
+    }
+
+    //회원 저장/변경. 커밋된 뒤에 반영한다
+    public void memberChanged(Long memberId, String username, int age, Long teamId) {
+        if (enabled) {
+            record(changes -> changes.members.put(memberId, new MemberColumns.Row(memberId, username, age, teamId)));
+        }
+    }
+
+    public void memberRemoved(Long memberId) {
+        if (enabled) {
+            record(changes -> changes.members.put(memberId, null));
+        }
+    }
+
+    //팀 추가/이름 변경
+    public void teamChanged(Long teamId, String name) {
+        if (enabled) {
+            record(changes -> changes.teams.put(teamId, name));
+        }
+    }
+
+    //어떤 행이 바뀌었는지 모르는 벌크 연산 후 호출한다. 트랜잭션 안이면 커밋된 뒤에 한 번만 다시 만든다
+    public void markChanged() {
+        if (enabled) {
+            record(changes -> changes.rebuild = true);
+        }
+    }
+
+    //트랜잭션 밖이면 바로 반영한다
+    private void record(Consumer<Changes> change) {
+        pendingChanges.current().ifPresentOrElse(change, () -> {
+            Changes changes = new Changes();
+            change.accept(changes);
+            committed(changes);
+        });
+    }
+
+    private void committed(Changes changes) {
+        if (changes.rebuild) {
+            changeVersion.incrementAndGet();
+            scheduleRebuild();
+            return;
+        }
+        synchronized (lock) {
+            if (replay != null) {
+                replay.add(changes);
+            }
+            //아직 적재 전이면 적재할 때 DB 에서 읽거나 replay 로 반영되므로 버린다
+            if (columns == null) {
+                return;
+            }
+            MemberColumns applied = columns.apply(changes.members, changes.teams);
+            if (applied == null) {
+                log.debug("member column store got a member of an unknown team, rebuilding");
+                changeVersion.incrementAndGet();
+                scheduleRebuild();
+                return;
+            }
+            columns = applied;
+            scheduleCompactionIfNeeded();
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (enabled && rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        boolean failed = false;
+        try {
+            while (!isFresh()) {
+                long version = changeVersion.get();
+                long start = System.nanoTime();
+                synchronized (lock) {
+                    replay = new ArrayList<>();
+                }
+                MemberColumns loaded = load(version);
+                synchronized (lock) {
+                    for (Changes changes : replay) {
+                        loaded = loaded == null ? null : loaded.apply(changes.members, changes.teams);
+                    }
+                    replay = null;
+                    if (loaded == null) {
+                        changeVersion.incrementAndGet();
+                        continue;
+                    }
+                    columns = loaded;
+                    scheduleCompactionIfNeeded();
+                }
+                log.debug("member column store rebuilt: rows={}, version={}, elapsed={}ms",
+                        loaded.size(), version, (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (RuntimeException e) {
+            failed = true;
+            synchronized (lock) {
+                replay = null;
+            }
+            log.warn("member column store rebuild failed, searches use the database until the next change", e);
+        } finally {
+            rebuildScheduled.set(false);
+        }
+        //루프를 빠져나온 뒤 예약 플래그를 내리기 전에 들어온 변경을 놓치지 않도록 다시 확인한다
+        if (!failed && !isFresh()) {
+            scheduleRebuild();
+        }
+    }
+
+    private MemberColumns load(long version) {
+        return loadTransaction.execute(status -> {
+            MemberColumns.Builder builder = MemberColumns.builder();
+            em.createQuery("select m.id, m.username, m.age, t.id, t.name from Member m left join m.team t order by m.id",
+                            Object[].class)
+                    .setHint(QueryHints.HINT_FETCH_SIZE, 1000)
+                    .getResultStream()
+                    .forEach(row -> builder.add((Long) row[0], (String) row[1], (Integer) row[2],
+                            (Long) row[3], (String) row[4]));
+            return builder.build(version);
+        });
+    }
+
+    //lock 안에서 호출
+    private void scheduleCompactionIfNeeded() {
+        if (compacting || !columns.needsCompaction()) {
+            return;
+        }
+        compacting = true;
+        rebuilder.execute(this::compact);
+    }
+
+    private void compact() {
+        MemberColumns snapshot = columns;
+        MemberColumns compacted;
+        try {
+            compacted = snapshot.compact();
+        } catch (RuntimeException e) {
+            log.warn("member column store compaction failed", e);
+            synchronized (lock) {
+                compacting = false;
+            }
+            return;
+        }
+        synchronized (lock) {
+            compacting = false;
+            //그동안 다시 만들었으면 버린다
+            MemberColumns rebased = columns.rebase(snapshot, compacted);
+            if (rebased != null) {
+                columns = rebased;
+            }
+            scheduleCompactionIfNeeded();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    //트랜잭션 하나의 변경. 같은 행은 마지막 값만 남는다
+    private static class Changes {
+        private final Map<Long, MemberColumns.Row> members = new LinkedHashMap<>();
+        private final Map<Long, String> teams = new LinkedHashMap<>();
+        private boolean rebuild;
+    }
+}
@@ -0,0 +1,62 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.Team;
+import hello.querydsl.repository.support.EntityChangeListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.stereotype.Component;
+
+/*
+    Member / Team 의 저장/변경/삭제를 행 단위로 MemberColumnStore 에 알린다. (팀 이름도 복제본에 들어 있으므로 Team 도 본다)
+    MemberNameIndexListener 와 같이 hibernate 이벤트 리스너로 등록한다. JPQL 벌크 연산은 MemberJpaRepository.executeBulk 에서 처리한다.
+    팀 삭제는 소속 회원이 먼저 바뀌거나 지워져야 하므로(FK) 따로 반영하지 않는다.
+ */
+@Component
+public class MemberColumnStoreListener implements EntityChangeListener {
+    private final MemberColumnStore memberColumnStore;
+
+    public MemberColumnStoreListener(MemberColumnStore memberColumnStore) {
+        this.memberColumnStore = memberColumnStore;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        changed(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        changed(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            memberColumnStore.memberRemoved(((Member) event.getEntity()).getId());
+        }
+    }
+
+    private void changed(Object entity) {
+        if (entity instanceof Member) {
+            Member member = (Member) entity;
+            memberColumnStore.memberChanged(member.getId(), member.getUsername(), member.getAge(), teamIdOf(member.getTeam()));
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            memberColumnStore.teamChanged(team.getId(), team.getName());
+        }
+    }
+
+    //프록시를 초기화하지 않고 팀 id 를 꺼낸다
+    private static Long teamIdOf(Team team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team.getId();
+    }
+}
@@ -0,0 +1,431 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/*
+    MemberTeamDto 검색용 불변 컬럼 스냅샷. 행은 member.id 순이다.
+    - id, age 는 long[] / int[] 에, username 과 팀은 사전(dictionary) 코드(int[])로 저장한다.
+    - 검색은 조건 값을 먼저 코드로 바꾼 뒤 int 비교만 하는 루프로 처리한다. 사전에 없는 값이면 루프 없이 빈 결과.
+    - 커밋된 변경은 apply 로 반영한 새 인스턴스를 돌려준다. (PrefixIndex 와 같은 방식)
+      회원 변경은 배열을 그대로 두고 member.id -> 행(삭제면 null) 변경 묶음 하나를 layer 로 위에 쌓는다. 비용은 변경 건수에만 비례한다.
+      어떤 layer 에 들어 있는 id 는 배열과 아래 layer 의 행을 가린다.
+      팀 배열은 팀 수만큼만 크므로 팀이 추가되거나 이름이 바뀌면 복사한다. 팀 코드는 추가만 되므로 이전 코드는 그대로 유효하다.
+    - layer 가 쌓이면 compact 로 합친다. 배열 전체를 다시 만들 수 있으므로 호출하는 쪽에서 백그라운드로 실행하고,
+      그동안 쌓인 layer 는 rebase 로 결과 위에 다시 올린다.
+ */
+class MemberColumns {
+    private static final int NO_TEAM = -1;
+    //layer 의 변경 건수가 이 값과 배열 크기의 1/8 중 큰 값을 넘으면 배열로 합친다
+    static final int MERGE_THRESHOLD = 1024;
+    //layer 가 이만큼 쌓이면 layer 끼리 하나로 합친다 (배열의 행마다 layer 수만큼 확인한다)
+    static final int MAX_LAYERS = 16;
+
+    private final long version;
+    private final int size;
+    private final long[] memberIds;
+    private final int[] ages;
+    private final int[] usernameCodes;
+    private final int[] teamCodes;
+    private final String[] usernames;
+    private final Map<String, Integer> usernameDictionary;
+    private final long[] teamIds;
+    private final String[] teamNames;
+    private final Map<Long, Integer> teamDictionary;
+    //오래된 것부터
+    private final List<Map<Long, ChangedRow>> layers;
+    private final int layerChanges;
+
+    private MemberColumns(Builder builder, long version) {
+        this.version = version;
+        this.size = builder.size;
+        this.memberIds = Arrays.copyOf(builder.memberIds, size);
+        this.ages = Arrays.copyOf(builder.ages, size);
+        this.usernameCodes = Arrays.copyOf(builder.usernameCodes, size);
+        this.teamCodes = Arrays.copyOf(builder.teamCodes, size);
+        this.usernames = builder.usernames.toArray(new String[0]);
+        this.usernameDictionary = builder.usernameDictionary;
+        this.teamIds = builder.teamIds.stream().mapToLong(Long::longValue).toArray();
+        this.teamNames = builder.teamNames.toArray(new String[0]);
+        this.teamDictionary = builder.teamDictionary;
+        this.layers = List.of();
+        this.layerChanges = 0;
+    }
+
+    //배열은 base 것을, 팀과 layer 는 주어진 것을 쓴다
+    private MemberColumns(MemberColumns base, long version, long[] teamIds, String[] teamNames,
+                          Map<Long, Integer> teamDictionary, List<Map<Long, ChangedRow>> layers) {
+        this.version = version;
+        this.size = base.size;
+        this.memberIds = base.memberIds;
+        this.ages = base.ages;
+        this.usernameCodes = base.usernameCodes;
+        this.teamCodes = base.teamCodes;
+        this.usernames = base.usernames;
+        this.usernameDictionary = base.usernameDictionary;
+        this.teamIds = teamIds;
+        this.teamNames = teamNames;
+        this.teamDictionary = teamDictionary;
+        this.layers = layers;
+        this.layerChanges = layers.stream().mapToInt(Map::size).sum();
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    //배열의 행 수 + 쌓인 변경 수 (로그용)
+    int size() {
+        return size + layerChanges;
+    }
+
+    /*
+        members: member.id -> 행, 삭제면 null. teams: team.id -> 팀 이름 (추가 또는 이름 변경).
+        회원이 사전에 없는 팀을 가리키면(팀 이벤트를 받지 못한 경우) 반영할 수 없으므로 null. 호출하는 쪽에서 다시 적재한다.
+     */
+    MemberColumns apply(Map<Long, Row> members, Map<Long, String> teams) {
+        if (members.isEmpty() && teams.isEmpty()) {
+            return this;
+        }
+        long[] newTeamIds = teamIds;
+        String[] newTeamNames = teamNames;
+        Map<Long, Integer> newTeamDictionary = teamDictionary;
+        if (!teams.isEmpty()) {
+            newTeamDictionary = new HashMap<>(teamDictionary);
+            List<Long> addedIds = new ArrayList<>();
+            List<String> addedNames = new ArrayList<>();
+            newTeamNames = teamNames.clone();
+            for (Map.Entry<Long, String> team : teams.entrySet()) {
+                Integer code = newTeamDictionary.get(team.getKey());
+                if (code != null) {
+                    newTeamNames[code] = team.getValue();
+                } else {
+                    newTeamDictionary.put(team.getKey(), teamNames.length + addedIds.size());
+                    addedIds.add(team.getKey());
+                    addedNames.add(team.getValue());
+                }
+            }
+            if (!addedIds.isEmpty()) {
+                newTeamIds = Arrays.copyOf(teamIds, teamIds.length + addedIds.size());
+                newTeamNames = Arrays.copyOf(newTeamNames, newTeamNames.length + addedNames.size());
+                for (int i = 0; i < addedIds.size(); i++) {
+                    newTeamIds[teamIds.length + i] = addedIds.get(i);
+                    newTeamNames[teamNames.length + i] = addedNames.get(i);
+                }
+            }
+        }
+
+        Map<Long, ChangedRow> layer = new HashMap<>();
+        for (Map.Entry<Long, Row> member : members.entrySet()) {
+            Row row = member.getValue();
+            if (row == null) {
+                layer.put(member.getKey(), null);
+                continue;
+            }
+            int teamCode = NO_TEAM;
+            if (row.teamId != null) {
+                Integer code = newTeamDictionary.get(row.teamId);
+                if (code == null) {
+                    return null;
+                }
+                teamCode = code;
+            }
+            layer.put(member.getKey(), new ChangedRow(row.memberId, row.username, row.age, teamCode));
+        }
+        List<Map<Long, ChangedRow>> newLayers = layers;
+        if (!layer.isEmpty()) {
+            newLayers = new ArrayList<>(layers.size() + 1);
+            newLayers.addAll(layers);
+            newLayers.add(Collections.unmodifiableMap(layer));
+            newLayers = Collections.unmodifiableList(newLayers);
+        }
+        return new MemberColumns(this, version, newTeamIds, newTeamNames, newTeamDictionary, newLayers);
+    }
+
+    boolean needsCompaction() {
+        return layers.size() >= MAX_LAYERS || layerChanges > mergeThreshold();
+    }
+
+    /*
+        layer 를 합친 새 인스턴스 (검색 결과는 같다). 변경이 많으면 배열과 합쳐서 다시 만들고(배열 크기에 비례), 적으면 layer 끼리만 합친다.
+        팀 코드는 그대로 유지한다.
+     */
+    MemberColumns compact() {
+        if (layers.isEmpty()) {
+            return this;
+        }
+        Map<Long, ChangedRow> latest = new HashMap<>();
+        for (Map<Long, ChangedRow> layer : layers) {
+            latest.putAll(layer);
+        }
+        if (layerChanges <= mergeThreshold()) {
+            return new MemberColumns(this, version, teamIds, teamNames, teamDictionary,
+                    List.of(Collections.unmodifiableMap(latest)));
+        }
+        Builder builder = new Builder(teamIds, teamNames);
+        List<ChangedRow> changedRows = new ArrayList<>();
+        for (ChangedRow row : latest.values()) {
+            if (row != null) {
+                changedRows.add(row);
+            }
+        }
+        changedRows.sort(Comparator.comparingLong(row -> row.memberId));
+        int c = 0;
+        for (int i = 0; i < size; i++) {
+            long memberId = memberIds[i];
+            while (c < changedRows.size() && changedRows.get(c).memberId < memberId) {
+                builder.addRow(changedRows.get(c++));
+            }
+            if (!latest.containsKey(memberId)) {
+                builder.add(memberId, usernames[usernameCodes[i]], ages[i], teamCodes[i]);
+            }
+        }
+        while (c < changedRows.size()) {
+            builder.addRow(changedRows.get(c++));
+        }
+        MemberColumns compacted = new MemberColumns(builder, version);
+        return new MemberColumns(compacted, version, teamIds, teamNames, teamDictionary, List.of());
+    }
+
+    /*
+        snapshot 을 compact 한 결과(compacted) 위에, snapshot 이후 이 인스턴스에 반영된 변경을 다시 올린다.
+        이 인스턴스가 snapshot 에 apply 만 해서 만들어진 것이 아니면(그 사이 다시 적재한 경우 등) null.
+     */
+    MemberColumns rebase(MemberColumns snapshot, MemberColumns compacted) {
+        if (memberIds != snapshot.memberIds || version != snapshot.version || layers.size() < snapshot.layers.size()) {
+            return null;
+        }
+        for (int i = 0; i < snapshot.layers.size(); i++) {
+            if (layers.get(i) != snapshot.layers.get(i)) {
+                return null;
+            }
+        }
+        List<Map<Long, ChangedRow>> newLayers = new ArrayList<>(compacted.layers);
+        newLayers.addAll(layers.subList(snapshot.layers.size(), layers.size()));
+        //팀 배열은 추가/이름 변경만 되므로 이 인스턴스의 것이 최신이다
+        return new MemberColumns(compacted, version, teamIds, teamNames, teamDictionary,
+                Collections.unmodifiableList(newLayers));
+    }
+
+    List<MemberTeamDto> search(MemberSearchCondition condition) {
+        String username = hasText(condition.getUsername()) ? condition.getUsername() : null;
+        int usernameCode = -1;
+        //배열에 없는 이름이어도 layer 에는 있을 수 있다
+        boolean scanColumns = true;
+        if (username != null) {
+            Integer code = usernameDictionary.get(username);
+            if (code == null) {
+                scanColumns = false;
+            } else {
+                usernameCode = code;
+            }
+            if (!scanColumns && layers.isEmpty()) {
+                return List.of();
+            }
+        }
+        //팀 이름은 유일하지 않으므로 이름이 같은 팀 코드를 모두 표시한다
+        boolean[] teamMatches = null;
+        if (hasText(condition.getTeamName())) {
+            teamMatches = new boolean[teamNames.length];
+            boolean any = false;
+            for (int t = 0; t < teamNames.length; t++) {
+                if (condition.getTeamName().equals(teamNames[t])) {
+                    teamMatches[t] = true;
+                    any = true;
+                }
+            }
+            if (!any) {
+                return List.of();
+            }
+        }
+        int minAge = condition.getAgeGoe() != null ? condition.getAgeGoe() : Integer.MIN_VALUE;
+        int maxAge = condition.getAgeLoe() != null ? condition.getAgeLoe() : Integer.MAX_VALUE;
+        boolean byUsername = usernameCode >= 0;
+        boolean hasChanges = !layers.isEmpty();
+
+        List<MemberTeamDto> result = new ArrayList<>();
+        for (int i = 0; scanColumns && i < size; i++) {
+            int age = ages[i];
+            if (age < minAge || age > maxAge) {
+                continue;
+            }
+            if (byUsername && usernameCodes[i] != usernameCode) {
+                continue;
+            }
+            int teamCode = teamCodes[i];
+            if (teamMatches != null && (teamCode == NO_TEAM || !teamMatches[teamCode])) {
+                continue;
+            }
+            if (hasChanges && isChanged(memberIds[i])) {
+                continue;
+            }
+            result.add(new MemberTeamDto(memberIds[i], usernames[usernameCodes[i]], age, teamIdOf(teamCode), teamNameOf(teamCode)));
+        }
+        if (!hasChanges) {
+            return result;
+        }
+
+        //위 layer 부터 읽어서 id 마다 최신 행만 본다
+        List<MemberTeamDto> changed = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (int l = layers.size() - 1; l >= 0; l--) {
+            for (Map.Entry<Long, ChangedRow> entry : layers.get(l).entrySet()) {
+                ChangedRow row = entry.getValue();
+                if (!seen.add(entry.getKey()) || row == null || row.age < minAge || row.age > maxAge) {
+                    continue;
+                }
+                if (username != null && !username.equals(row.username)) {
+                    continue;
+                }
+                if (teamMatches != null && (row.teamCode == NO_TEAM || !teamMatches[row.teamCode])) {
+                    continue;
+                }
+                changed.add(new MemberTeamDto(row.memberId, row.username, row.age, teamIdOf(row.teamCode), teamNameOf(row.teamCode)));
+            }
+        }
+        return changed.isEmpty() ? result : merge(result, changed);
+    }
+
+    private Long teamIdOf(int teamCode) {
+        return teamCode == NO_TEAM ? null : teamIds[teamCode];
+    }
+
+    private String teamNameOf(int teamCode) {
+        return teamCode == NO_TEAM ? null : teamNames[teamCode];
+    }
+
+    private boolean isChanged(long memberId) {
+        for (Map<Long, ChangedRow> layer : layers) {
+            if (layer.containsKey(memberId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int mergeThreshold() {
+        return Math.max(MERGE_THRESHOLD, size / 8);
+    }
+
+    //둘 다 member.id 순으로 합친다 (배열의 결과는 이미 id 순)
+    private static List<MemberTeamDto> merge(List<MemberTeamDto> columns, List<MemberTeamDto> changed) {
+        changed.sort(Comparator.comparing(MemberTeamDto::getMemberId));
+        List<MemberTeamDto> result = new ArrayList<>(columns.size() + changed.size());
+        int c = 0;
+        for (MemberTeamDto dto : columns) {
+            while (c < changed.size() && changed.get(c).getMemberId() < dto.getMemberId()) {
+                result.add(changed.get(c++));
+            }
+            result.add(dto);
+        }
+        result.addAll(changed.subList(c, changed.size()));
+        return result;
+    }
+
+    //apply 에 넘기는 회원 한 행
+    static class Row {
+        private final long memberId;
+        private final String username;
+        private final int age;
+        private final Long teamId;
+
+        Row(long memberId, String username, int age, Long teamId) {
+            this.memberId = memberId;
+            this.username = username;
+            this.age = age;
+            this.teamId = teamId;
+        }
+    }
+
+    //layer 에 쌓인 행. 팀은 코드로 들고 있어서 팀 이름이 바뀌어도 그대로 쓴다
+    private static class ChangedRow {
+        private final long memberId;
+        private final String username;
+        private final int age;
+        private final int teamCode;
+
+        private ChangedRow(long memberId, String username, int age, int teamCode) {
+            this.memberId = memberId;
+            this.username = username;
+            this.age = age;
+            this.teamCode = teamCode;
+        }
+    }
+
+    //member.id 순으로 add 한다
+    static class Builder {
+        private int size;
+        private long[] memberIds = new long[1024];
+        private int[] ages = new int[1024];
+        private int[] usernameCodes = new int[1024];
+        private int[] teamCodes = new int[1024];
+        private final List<String> usernames = new ArrayList<>();
+        private final Map<String, Integer> usernameDictionary = new HashMap<>();
+        private final List<Long> teamIds = new ArrayList<>();
+        private final List<String> teamNames = new ArrayList<>();
+        private final Map<Long, Integer> teamDictionary = new HashMap<>();
+
+        Builder() {
+        }
+
+        //compact 용: 팀 코드를 그대로 유지한다
+        private Builder(long[] teamIds, String[] teamNames) {
+            for (int t = 0; t < teamIds.length; t++) {
+                this.teamIds.add(teamIds[t]);
+                this.teamNames.add(teamNames[t]);
+                this.teamDictionary.put(teamIds[t], t);
+            }
+        }
+
+        Builder add(long memberId, String username, int age, Long teamId, String teamName) {
+            return add(memberId, username, age, teamId == null ? NO_TEAM : teamDictionary.computeIfAbsent(teamId, id -> {
+                teamIds.add(id);
+                teamNames.add(teamName);
+                return teamIds.size() - 1;
+            }));
+        }
+
+        private void addRow(ChangedRow row) {
+            add(row.memberId, row.username, row.age, row.teamCode);
+        }
+
+        private Builder add(long memberId, String username, int age, int teamCode) {
+            if (size == memberIds.length) {
+                int capacity = size * 2;
+                memberIds = Arrays.copyOf(memberIds, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                usernameCodes = Arrays.copyOf(usernameCodes, capacity);
+                teamCodes = Arrays.copyOf(teamCodes, capacity);
+            }
+            memberIds[size] = memberId;
+            ages[size] = age;
+            usernameCodes[size] = usernameDictionary.computeIfAbsent(username, name -> {
+                usernames.add(name);
+                return usernames.size() - 1;
+            });
+            teamCodes[size] = teamCode;
+            size++;
+            return this;
+        }
+
+        MemberColumns build(long version) {
+            return new MemberColumns(this, version);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package hello.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import hello.querydsl.dto.MemberSearchCondition;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+
+import static hello.querydsl.entity.QMember.member;
+import static hello.querydsl.entity.QTeam.team;
+import static hello.querydsl.repository.MemberSearchPredicates.ageGoe;
+import static hello.querydsl.repository.MemberSearchPredicates.ageLoe;
+import static hello.querydsl.repository.MemberSearchPredicates.usernameEq;
+import static org.springframework.util.StringUtils.hasText;
+
+/*
+    페이징 검색용 count 쿼리를 조건에 맞게 최소화한다.
+    - teamName 조건이 없으면 team 조인을 제거한다. (member -> team 은 ManyToOne 이라 left join 이 row 수를 바꾸지 않음)
+    - teamName 조건이 있으면 null 팀은 어차피 걸러지므로 inner join 으로 조회한다.
+    - orderBy / offset / limit 없이 count(member.id) 만 조회한다.
+    - PageableExecutionUtils 가 total 을 추론할 수 있으면 count 쿼리 자체를 실행하지 않는다.
+ */
+@Slf4j
+public class MemberCountPlanner {
+    public enum Optimization {
+        COUNT_SKIPPED,
+        TEAM_JOIN_ELIMINATED,
+        TEAM_JOIN_KEPT
+    }
+
+    private final JPAQueryFactory queryFactory;
+
+    public MemberCountPlanner(JPAQueryFactory queryFactory) {
+        this.queryFactory = queryFactory;
+    }
+
+    public CountPlan plan(MemberSearchCondition condition) {
+        if (hasText(condition.getTeamName())) {
+            JPAQuery<Long> query = queryFactory
+                    .select(member.id.count())
+                    .from(member)
+                    .join(member.team, team)
+                    .where(
+                            usernameEq(condition.getUsername()),
+                            team.name.eq(condition.getTeamName()),
+                            ageGoe(condition.getAgeGoe()),
+                            ageLoe(condition.getAgeLoe())
+                    );
+            return new CountPlan(query, Optimization.TEAM_JOIN_KEPT);
+        }
+
+        JPAQuery<Long> query = queryFactory
+                .select(member.id.count())
+                .from(member)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                );
+        return new CountPlan(query, Optimization.TEAM_JOIN_ELIMINATED);
+    }
+
+    public <T> Page<T> page(List<T> content, Pageable pageable, MemberSearchCondition condition) {
+        return page(content, pageable, plan(condition));
+    }
+
+    public <T> Page<T> page(List<T> content, Pageable pageable, CountPlan plan) {
+        Page<T> page = PageableExecutionUtils.getPage(content, pageable, plan::fetchCount);
+        log.debug("member count plan applied: {}", plan.getApplied());
+        return page;
+    }
+
+    public static class CountPlan {
+        private final JPAQuery<Long> query;
+        private final Optimization planned;
+        private boolean executed;
+
+        private CountPlan(JPAQuery<Long> query, Optimization planned) {
+            this.query = query;
+            this.planned = planned;
+        }
+
+        public long fetchCount() {
+            executed = true;
+            Long count = query.fetchOne();
+            return count != null ? count : 0L;
+        }
+
+        public Optimization getPlanned() {
+            return planned;
+        }
+
+        //count 쿼리가 실제로 실행되지 않았다면 COUNT_SKIPPED
+        public Optimization getApplied() {
+            return executed ? planned : Optimization.COUNT_SKIPPED;
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package hello.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.dml.DMLClause;
 import com.querydsl.core.types.Predicate;
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import hello.querydsl.dto.MemberSearchCondition;
 import hello.querydsl.dto.MemberTeamDto;
@@ -10,49 +10,113 @@ import hello.querydsl.dto.QMemberTeamDto;
 import hello.querydsl.entity.Member;
 import hello.querydsl.entity.QMember;
 import hello.querydsl.entity.QTeam;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static hello.querydsl.entity.QMember.*;
 import static hello.querydsl.entity.QTeam.*;
+import static hello.querydsl.repository.MemberSearchPredicates.ageGoe;
+import static hello.querydsl.repository.MemberSearchPredicates.ageLoe;
+import static hello.querydsl.repository.MemberSearchPredicates.teamNameEq;
+import static hello.querydsl.repository.MemberSearchPredicates.usernameEq;
 import static org.springframework.util.StringUtils.*;
 
+/*
+    SimpleJpaRepository 와 같이 기본은 읽기 전용 트랜잭션(FlushMode.MANUAL, 스냅샷 없음)이고, 쓰기 메서드만 따로 @Transactional 을 붙인다.
+    엔티티 목록 조회는 org.hibernate.readOnly 힌트도 붙여서 바깥 쓰기 트랜잭션에 참여할 때도 스냅샷을 만들지 않는다.
+    (읽기 전용으로 조회한 엔티티는 수정해도 flush 되지 않는다)
+ */
 @Repository
+@Transactional(readOnly = true)
 public class MemberJpaRepository {
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
-
-    public MemberJpaRepository(EntityManager em) {
+    private final MemberSearchQueryCache searchQueryCache;
+    private final MemberSearchResultCache resultCache;
+    private final MemberNameIndex memberNameIndex;
+    private final MemberColumnStore memberColumnStore;
+    private final TeamStatistics teamStatistics;
+    //querydsl.sharding.enabled 일 때만 있다
+    private final MemberShardRepository memberShardRepository;
+
+    //stream 조회 시 JDBC fetch size 이자 영속성 컨텍스트를 비우는 주기
+    @Value("${querydsl.stream.fetch-size:500}")
+    private int streamFetchSize = 500;
+
+    public MemberJpaRepository(EntityManager em, MemberSearchQueryCache searchQueryCache,
+                               MemberSearchResultCache resultCache, MemberNameIndex memberNameIndex,
+                               MemberColumnStore memberColumnStore, TeamStatistics teamStatistics,
+                               ObjectProvider<MemberShardRepository> memberShardRepository) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.searchQueryCache = searchQueryCache;
+        this.resultCache = resultCache;
+        this.memberNameIndex = memberNameIndex;
+        this.memberColumnStore = memberColumnStore;
+        this.teamStatistics = teamStatistics;
+        this.memberShardRepository = memberShardRepository.getIfAvailable();
     }
 
+    @Transactional
     public void save(Member member) {
         em.persist(member);
     }
 
+    /*
+        JPQL 벌크 update/delete 는 영속성 컨텍스트와 엔티티 이벤트를 거치지 않는다.
+        메모리에 유지하는 결과 캐시 / 이름 인덱스 / 컬럼 복제본 / 팀 통계가 변경을 알 수 있도록 Member, Team 벌크 연산은 모두 여기를 거친다.
+        실행 전에 쌓인 변경을 flush 해서 벌크 연산이 덮어쓰지 않게 하고, 실행 후 영속성 컨텍스트를 비운다.
+        어떤 팀이 바뀌었는지 알 수 없으므로 검색 결과 캐시 전체를 무효화한다.
+        이름 인덱스도 어떤 회원이 바뀌었는지 알 수 없으므로 커밋 후 전체를 다시 읽는다.
+     */
+    @Transactional
+    public long executeBulk(Function<JPAQueryFactory, DMLClause<?>> bulkClause) {
+        em.flush();
+        long count = bulkClause.apply(queryFactory).execute();
+        em.clear();
+        resultCache.invalidateAll();
+        memberNameIndex.reloadAfterCommit();
+        memberColumnStore.markChanged();
+        teamStatistics.markStale();
+        return count;
+    }
+
     public Optional<Member> findById(Long id) {
         Member member = em.find(Member.class, id);
         return Optional.ofNullable(member);
     }
 
     public List<Member> findAll() {
-        return em.createQuery("select m from Member m", Member.class).getResultList();
+        return em.createQuery("select m from Member m", Member.class)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultList();
     }
 
     public List<Member> findAll_querydsl() {
         return queryFactory
                 .selectFrom(member)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .fetch();
     }
 
     public List<Member> findByUsername(String username) {
         return em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .getResultList();
     }
 
@@ -60,6 +124,7 @@ public class MemberJpaRepository {
         return queryFactory
                 .selectFrom(member)
                 .where(member.username.eq(username))
+                .setHint(QueryHints.HINT_READONLY, true)
                 .fetch();
     }
 
@@ -91,7 +156,23 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    //메모리 컬럼 복제본이 최신이면 거기서, 아니면 조건 조합별로 미리 만들어 둔 JPQL 에 파라미터만 바인딩해서 조회한다
+    //샤드 모드면 MemberRepository.search 와 같이 샤드에서 조회한다
     public List<MemberTeamDto> search(MemberSearchCondition memberSearchCondition) {
+        if (memberShardRepository != null) {
+            return memberShardRepository.search(memberSearchCondition);
+        }
+        return resultCache.get("search", memberSearchCondition, Pageable.unpaged(), () ->
+                memberColumnStore.search(memberSearchCondition).orElseGet(() ->
+                        List.copyOf(searchQueryCache.contentQuery(em, memberSearchCondition).getResultList())));
+    }
+
+    /*
+        결과를 List 로 모으지 않고 ResultSet 에서 한 건씩 꺼내는 Stream 을 반환한다.
+        트랜잭션 안에서 호출해야 하고, 사용이 끝나면 반드시 close 해야 커넥션이 반환된다.
+     */
+    @Transactional(propagation = Propagation.MANDATORY, readOnly = true)
+    public Stream<MemberTeamDto> searchStream(MemberSearchCondition memberSearchCondition) {
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -107,22 +188,27 @@ public class MemberJpaRepository {
                         ageGoe(memberSearchCondition.getAgeGoe()),
                         ageLoe(memberSearchCondition.getAgeLoe())
                 )
-                .fetch();
+                .orderBy(member.id.asc())
+                .setHint(QueryHints.HINT_FETCH_SIZE, streamFetchSize)
+                .stream();
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-    }
-
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    /*
+        searchStream 을 트랜잭션 안에서 끝까지 소비한다.
+        fetch size 만큼 처리할 때마다 영속성 컨텍스트를 비워서 결과 크기와 상관없이 힙 사용량을 일정하게 유지한다.
+     */
+    @Transactional(readOnly = true)
+    public long forEachSearch(MemberSearchCondition memberSearchCondition, Consumer<MemberTeamDto> consumer) {
+        long count = 0;
+        try (Stream<MemberTeamDto> stream = searchStream(memberSearchCondition)) {
+            Iterator<MemberTeamDto> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                if (++count % streamFetchSize == 0) {
+                    em.clear();
+                }
+            }
+        }
+        return count;
     }
 }
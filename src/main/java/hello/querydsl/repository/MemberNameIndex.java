@@ -0,0 +1,258 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberNameDto;
+import hello.querydsl.repository.support.PrefixIndex;
+import hello.querydsl.repository.support.TransactionBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/*
+    회원 이름 자동완성용 메모리 prefix 인덱스 (PrefixIndex).
+    - 기동이 끝나면(ApplicationReadyEvent) 전체 회원의 id, username 을 읽어서 만든다. 그 전에는 DB like 조회로 대신한다.
+    - save / 변경 / 삭제는 MemberNameIndexListener(hibernate 이벤트)가, 벌크 연산은 MemberBulkRepository / MemberJpaRepository.executeBulk 가 알려준다.
+      변경은 트랜잭션마다 모아 두었다가 커밋된 뒤에 한 번에 반영하므로 롤백된 변경은 인덱스에 들어가지 않는다.
+    - 검색은 현재 인덱스 인스턴스(불변)를 읽기만 하므로 잠금이 없다. 반영은 lock 안에서 변경 건수만큼의 layer 만 쌓는다.
+    - layer 합치기(compact)와 벌크 연산 뒤의 재적재는 백그라운드 스레드에서 만들고 volatile 로 바꿔 끼운다.
+      만드는 동안 커밋된 변경은 결과 위에 다시 반영한다. (변경은 id -> 이름 값이므로 두 번 반영해도 같다)
+ */
+@Slf4j
+@Component
+public class MemberNameIndex {
+    @PersistenceContext
+    private EntityManager em;
+    private final TransactionTemplate loadTransaction;
+    private final Object lock = new Object();
+    //재적재끼리만 순서를 맞춘다 (반영은 막지 않는다)
+    private final Object reloadLock = new Object();
+    //compact 와 afterCommit 재적재를 실행하는 스레드 하나
+    private final ExecutorService maintenance = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "member-name-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile PrefixIndex index;
+    //아래는 lock 으로 보호
+    private boolean compacting;
+    private boolean reloadScheduled;
+    //재적재 중에 커밋된 변경, 재적재 중이 아니면 null
+    private List<Map<Long, String>> replay;
+    //변경은 트랜잭션마다 하나의 PendingChanges 에 모았다가 커밋된 뒤에 반영한다
+    private final TransactionBuffer<PendingChanges> pendingChanges =
+            TransactionBuffer.afterCommit(PendingChanges::new, this::committed);
+
+    public MemberNameIndex(PlatformTransactionManager transactionManager) {
+        //백그라운드 스레드에서도 호출되므로 항상 새 트랜잭션으로 읽는다
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenance.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    public boolean isWarmedUp() {
+        return index != null;
+    }
+
+    //이름, id 순으로 최대 limit 건
+    public List<MemberNameDto> suggest(String prefix, int limit) {
+        PrefixIndex current = index;
+        if (current == null) {
+            return suggestFromDatabase(prefix, limit);
+        }
+        return current.search(prefix, limit).stream()
+                .map(match -> new MemberNameDto(match.getId(), match.getName()))
+                .collect(Collectors.toList());
+    }
+
+    //DB 를 읽는 동안에는 lock 을 잡지 않는다. 그동안 커밋된 변경은 읽은 결과 위에 다시 반영한다
+    public void reload() {
+        synchronized (reloadLock) {
+            long start = System.nanoTime();
+            synchronized (lock) {
+                replay = new ArrayList<>();
+            }
+            PrefixIndex loaded;
+            try {
+                loaded = loadTransaction.execute(status -> {
+                    PrefixIndex.Builder builder = PrefixIndex.builder();
+                    em.createQuery("select m.id, m.username from Member m", Object[].class)
+                            .setHint(QueryHints.HINT_FETCH_SIZE, 1000)
+                            .getResultStream()
+                            .forEach(row -> builder.add((String) row[1], (Long) row[0]));
+                    return builder.build();
+                });
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    replay = null;
+                }
+                throw e;
+            }
+            synchronized (lock) {
+                for (Map<Long, String> changes : replay) {
+                    loaded = loaded.apply(changes);
+                }
+                replay = null;
+                index = loaded;
+                scheduleCompactionIfNeeded();
+            }
+            log.info("member name index loaded: names={}, elapsed={}ms",
+                    loaded.distinctNames(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    //username 이 null 이면 인덱스에서 뺀다
+    public void changed(Long memberId, String username) {
+        Map<Long, String> change = new HashMap<>();
+        change.put(memberId, username);
+        record(change);
+    }
+
+    public void removed(Long memberId) {
+        changed(memberId, null);
+    }
+
+    public void removedAll(Collection<Long> memberIds) {
+        Map<Long, String> changes = new HashMap<>();
+        memberIds.forEach(id -> changes.put(id, null));
+        record(changes);
+    }
+
+    //JPQL 벌크 update 후 현재 트랜잭션에서 대상 회원의 이름을 다시 읽는다. 없어진 id 는 삭제로 본다
+    public void refresh(Collection<Long> memberIds) {
+        Map<Long, String> changes = new HashMap<>();
+        memberIds.forEach(id -> changes.put(id, null));
+        em.createQuery("select m.id, m.username from Member m where m.id in :ids", Object[].class)
+                .setParameter("ids", memberIds)
+                .getResultList()
+                .forEach(row -> changes.put((Long) row[0], (String) row[1]));
+        record(changes);
+    }
+
+    //어떤 회원이 바뀌었는지 알 수 없는 벌크 연산 후: 커밋되면 백그라운드에서 전체를 다시 읽는다
+    public void reloadAfterCommit() {
+        pendingChanges.current().ifPresentOrElse(pending -> pending.reload = true, this::scheduleReload);
+    }
+
+    private void record(Map<Long, String> changes) {
+        pendingChanges.current().ifPresentOrElse(pending -> pending.changes.putAll(changes), () -> apply(changes));
+    }
+
+    private void committed(PendingChanges pending) {
+        if (pending.reload) {
+            scheduleReload();
+        } else {
+            apply(pending.changes);
+        }
+    }
+
+    private void apply(Map<Long, String> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            if (replay != null) {
+                replay.add(changes);
+            }
+            //아직 적재 전이면 적재할 때 DB 에서 읽거나 replay 로 반영되므로 버린다
+            if (index != null) {
+                index = index.apply(changes);
+                scheduleCompactionIfNeeded();
+            }
+        }
+    }
+
+    //lock 안에서 호출
+    private void scheduleCompactionIfNeeded() {
+        if (compacting || !index.needsCompaction()) {
+            return;
+        }
+        compacting = true;
+        maintenance.execute(this::compact);
+    }
+
+    private void compact() {
+        PrefixIndex snapshot = index;
+        PrefixIndex compacted;
+        try {
+            compacted = snapshot.compact();
+        } catch (RuntimeException e) {
+            log.warn("member name index compaction failed", e);
+            synchronized (lock) {
+                compacting = false;
+            }
+            return;
+        }
+        synchronized (lock) {
+            compacting = false;
+            //그동안 다시 적재했으면 버린다
+            PrefixIndex rebased = index.rebase(snapshot, compacted);
+            if (rebased != null) {
+                index = rebased;
+            }
+            scheduleCompactionIfNeeded();
+        }
+    }
+
+    //이미 예약된 재적재가 아직 시작하지 않았으면 그걸로 충분하다
+    private void scheduleReload() {
+        synchronized (lock) {
+            if (reloadScheduled) {
+                return;
+            }
+            reloadScheduled = true;
+        }
+        maintenance.execute(() -> {
+            synchronized (lock) {
+                reloadScheduled = false;
+            }
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                log.warn("member name index reload failed", e);
+            }
+        });
+    }
+
+    private List<MemberNameDto> suggestFromDatabase(String prefix, int limit) {
+        return em.createQuery("select new hello.querydsl.dto.MemberNameDto(m.id, m.username) from Member m" +
+                        " where m.username like :prefix escape '!' order by m.username, m.id", MemberNameDto.class)
+                .setParameter("prefix", escapeLike(prefix) + "%")
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private static class PendingChanges {
+        private final Map<Long, String> changes = new HashMap<>();
+        private boolean reload;
+    }
+}
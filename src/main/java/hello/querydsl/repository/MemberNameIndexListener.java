@@ -0,0 +1,45 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.entity.Member;
+import hello.querydsl.repository.support.EntityChangeListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.springframework.stereotype.Component;
+
+/*
+    Member 의 저장/변경/삭제를 MemberNameIndex 에 알린다. 반영은 커밋된 뒤에 된다.
+    (JPQL 벌크 연산은 MemberBulkRepository, MemberJpaRepository.executeBulk 에서 처리)
+    엔티티가 리포지토리 패키지에 의존하지 않도록 JPA 엔티티 리스너 대신 hibernate 이벤트 리스너로 등록한다.
+ */
+@Component
+public class MemberNameIndexListener implements EntityChangeListener {
+    private final MemberNameIndex memberNameIndex;
+
+    public MemberNameIndexListener(MemberNameIndex memberNameIndex) {
+        this.memberNameIndex = memberNameIndex;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Member member = (Member) event.getEntity();
+            memberNameIndex.changed(member.getId(), member.getUsername());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Member member = (Member) event.getEntity();
+            memberNameIndex.changed(member.getId(), member.getUsername());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            memberNameIndex.removed(((Member) event.getEntity()).getId());
+        }
+    }
+}
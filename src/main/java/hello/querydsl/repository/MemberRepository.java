@@ -2,10 +2,16 @@ package hello.querydsl.repository;
 
 import hello.querydsl.entity.Member;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 public interface MemberRepository extends JpaRepository<Member, Long> , MemberRepositoryCustom, QuerydslPredicateExecutor<Member> {
+    //조회만 하는 엔티티 목록이므로 dirty checking 스냅샷을 만들지 않는다
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
     List<Member> findByUsername(String username);
 }
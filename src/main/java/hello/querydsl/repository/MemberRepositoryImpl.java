@@ -1,81 +1,135 @@
 package hello.querydsl.repository;
 
 import com.querydsl.core.QueryResults;
-import com.querydsl.core.types.dsl.BooleanExpression;
-import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import hello.querydsl.dto.MemberSearchCondition;
 import hello.querydsl.dto.MemberTeamDto;
 import hello.querydsl.dto.QMemberTeamDto;
-import hello.querydsl.entity.Member;
+import hello.querydsl.repository.support.ParallelCountExecutor;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 
 import javax.persistence.EntityManager;
 import java.util.List;
 
 import static hello.querydsl.entity.QMember.member;
 import static hello.querydsl.entity.QTeam.team;
-import static org.springframework.util.StringUtils.hasText;
+import static hello.querydsl.repository.MemberSearchPredicates.ageGoe;
+import static hello.querydsl.repository.MemberSearchPredicates.ageLoe;
+import static hello.querydsl.repository.MemberSearchPredicates.memberIdGt;
+import static hello.querydsl.repository.MemberSearchPredicates.teamNameEq;
+import static hello.querydsl.repository.MemberSearchPredicates.usernameEq;
 
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
-
-    public MemberRepositoryImpl(EntityManager em) {
+    private final MemberCountPlanner countPlanner;
+    private final MemberSearchQueryCache searchQueryCache;
+    private final MemberSearchResultCache resultCache;
+    private final ParallelCountExecutor parallelCountExecutor;
+    private final MemberColumnStore memberColumnStore;
+    //querydsl.sharding.enabled 일 때만 있다
+    private final MemberShardRepository memberShardRepository;
+
+    public MemberRepositoryImpl(EntityManager em, MemberSearchQueryCache searchQueryCache,
+                                MemberSearchResultCache resultCache, ParallelCountExecutor parallelCountExecutor,
+                                MemberColumnStore memberColumnStore,
+                                ObjectProvider<MemberShardRepository> memberShardRepository) {
+        this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.countPlanner = new MemberCountPlanner(queryFactory);
+        this.searchQueryCache = searchQueryCache;
+        this.resultCache = resultCache;
+        this.parallelCountExecutor = parallelCountExecutor;
+        this.memberColumnStore = memberColumnStore;
+        this.memberShardRepository = memberShardRepository.getIfAvailable();
     }
 
+    //메모리 컬럼 복제본이 최신이면 거기서, 아니면 조건 조합별로 미리 만들어 둔 JPQL 에 파라미터만 바인딩해서 조회한다
+    //샤드 모드면 샤드에서 scatter-gather 로 조회한다 (기본 DB 의 캐시 / 컬럼 복제본은 쓰지 않는다)
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+        if (memberShardRepository != null) {
+            return memberShardRepository.search(condition);
+        }
+        return resultCache.get("search", condition, Pageable.unpaged(), () ->
+                memberColumnStore.search(condition).orElseGet(() ->
+                        List.copyOf(searchQueryCache.contentQuery(em, condition).getResultList())));
     }
 
+    //비교 기준: fetchResults 로 content 와 count 를 항상 함께 실행한다 (count 최적화는 searchPageComplex)
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();
+        return resultCache.get("searchPageSimple", condition, pageable, () -> {
+            QueryResults<MemberTeamDto> results = queryFactory
+                    .select(new QMemberTeamDto(
+                            member.id.as("memberId"),
+                            member.username,
+                            member.age,
+                            team.id.as("teamId"),
+                            team.name.as("teamName")))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(
+                            usernameEq(condition.getUsername()),
+                            teamNameEq(condition.getTeamName()),
+                            ageGoe(condition.getAgeGoe()),
+                            ageLoe(condition.getAgeLoe())
+                    )
+                    .offset(pageable.getOffset())
+                    .limit(pageable.getPageSize())
+                    .fetchResults();
+
+            List<MemberTeamDto> content = results.getResults();
+            long total = results.getTotal();
+
+            return new PageImpl<>(content, pageable, total);
+        });
+    }
 
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        if (memberShardRepository != null) {
+            return memberShardRepository.searchPageComplex(condition, pageable);
+        }
+        return resultCache.get("searchPageComplex", condition, pageable, () -> {
+            List<MemberTeamDto> content = searchQueryCache.contentQuery(em, condition)
+                    .setFirstResult((int) pageable.getOffset())
+                    .setMaxResults(pageable.getPageSize())
+                    .getResultList();
+
+            //count 쿼리는 MemberCountPlanner 가 조건에 맞게 최소화해서 필요할 때만 실행한다
+            return countPlanner.page(content, pageable, condition);
+        });
+    }
 
-        return new PageImpl<>(content, pageable, total);
+    /*
+        searchPageComplex 와 같은 결과를 내지만 count 쿼리를 별도 읽기 전용 EntityManager 에서 content 쿼리와 동시에 실행한다.
+        count 는 현재 트랜잭션 밖에서 실행되므로 같은 트랜잭션에서 아직 커밋하지 않은 변경은 total 에 반영되지 않는다.
+     */
+    @Override
+    public Page<MemberTeamDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable) {
+        return resultCache.get("searchPageParallel", condition, pageable, () ->
+                parallelCountExecutor.getPage(em, pageable,
+                        () -> searchQueryCache.contentQuery(em, condition)
+                                .setFirstResult((int) pageable.getOffset())
+                                .setMaxResults(pageable.getPageSize())
+                                .getResultList(),
+                        countEm -> new MemberCountPlanner(new JPAQueryFactory(countEm)).plan(condition).fetchCount()));
     }
 
+    /*
+        offset 대신 마지막으로 조회한 member.id 이후부터 seek 한다.
+        size + 1 건을 조회해서 다음 페이지 존재 여부를 판단하므로 count 쿼리가 없다.
+     */
     @Override
-    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+    public Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Long lastMemberId, int size) {
         List<MemberTeamDto> content = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -86,44 +140,21 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
+                        memberIdGt(lastMemberId),
                         usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
+                .orderBy(member.id.asc())
+                .limit(size + 1)
+                .setHint(QueryHints.HINT_CACHEABLE, searchQueryCache.isQueryCacheable())
                 .fetch();
 
-        JPAQuery<Member> countQuery = queryFactory
-                .selectFrom(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize());
-
-//        return new PageImpl<>(content, pageable, total);
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
-    }
-
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-    }
-
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content = content.subList(0, size);
+        }
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
     }
 }
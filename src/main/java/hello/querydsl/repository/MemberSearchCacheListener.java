@@ -0,0 +1,92 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.Team;
+import hello.querydsl.repository.support.EntityChangeListener;
+import org.hibernate.Hibernate;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/*
+    Member 의 저장/변경/삭제, Team 의 이름 변경/삭제를 MemberSearchResultCache 에 알린다.
+    save, changeTeam 후 flush, remove 모두 이 이벤트를 거친다. (JPQL 벌크 연산은 MemberJpaRepository.executeBulk 에서 처리)
+    팀을 옮기면 이전 팀의 결과도 무효화해야 하므로, 엔티티에 이전 값을 들고 있지 않고 hibernate post update 이벤트의 old state 를 읽는다.
+    캐시된 MemberTeamDto 에는 팀 이름이 들어 있으므로 팀 이름이 바뀌면 이전 이름과 새 이름의 결과를 모두 무효화한다.
+    (팀 insert 는 소속 회원이 없으므로 결과가 바뀌지 않는다)
+ */
+@Component
+public class MemberSearchCacheListener implements EntityChangeListener {
+    private final MemberSearchResultCache resultCache;
+
+    public MemberSearchCacheListener(MemberSearchResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            invalidate(((Member) event.getEntity()).getTeam());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Team) {
+            teamUpdated(event);
+            return;
+        }
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+        Team team = ((Member) event.getEntity()).getTeam();
+        invalidate(team);
+        Object[] oldState = event.getOldState();
+        if (oldState == null) {
+            //detached 엔티티를 update 한 경우 등 이전 팀을 알 수 없으면 전체를 무효화한다
+            resultCache.invalidateAll();
+            return;
+        }
+        Team previousTeam = (Team) oldState[event.getPersister().getEntityMetamodel().getPropertyIndex("team")];
+        if (previousTeam != null && previousTeam != team) {
+            invalidate(previousTeam);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            invalidate(((Member) event.getEntity()).getTeam());
+        } else if (event.getEntity() instanceof Team) {
+            resultCache.invalidateTeam(((Team) event.getEntity()).getName());
+        }
+    }
+
+    private void teamUpdated(PostUpdateEvent event) {
+        String name = ((Team) event.getEntity()).getName();
+        Object[] oldState = event.getOldState();
+        if (oldState == null) {
+            resultCache.invalidateAll();
+            return;
+        }
+        String previousName = (String) oldState[event.getPersister().getEntityMetamodel().getPropertyIndex("name")];
+        if (!Objects.equals(previousName, name)) {
+            resultCache.invalidateTeam(previousName);
+            resultCache.invalidateTeam(name);
+        }
+    }
+
+    //이벤트 안에서 지연 로딩을 일으키지 않도록, 초기화되지 않은 팀 프록시면 전체를 무효화한다
+    private void invalidate(Team team) {
+        if (team == null) {
+            resultCache.invalidateTeam(null);
+        } else if (Hibernate.isInitialized(team)) {
+            resultCache.invalidateTeam(team.getName());
+        } else {
+            resultCache.invalidateAll();
+        }
+    }
+}
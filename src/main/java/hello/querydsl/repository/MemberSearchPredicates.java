@@ -0,0 +1,37 @@
+package hello.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+
+import static hello.querydsl.entity.QMember.member;
+import static hello.querydsl.entity.QTeam.team;
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * MemberSearchCondition 의 검색 조건. 조건 값이 없으면 null 을 돌려주므로 where 에 그대로 나열하면 된다.
+ * team 조건은 QTeam.team 별칭으로 member.team 을 join 한 쿼리에서만 쓴다.
+ */
+public final class MemberSearchPredicates {
+    private MemberSearchPredicates() {
+    }
+
+    public static BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null;
+    }
+
+    public static BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    public static BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    public static BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+
+    //keyset 페이징: 마지막으로 읽은 id 다음부터
+    public static BooleanExpression memberIdGt(Long lastMemberId) {
+        return lastMemberId != null ? member.id.gt(lastMemberId) : null;
+    }
+}
@@ -0,0 +1,165 @@
+package hello.querydsl.repository;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.dto.QMemberTeamDto;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.transform.ResultTransformer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static hello.querydsl.entity.QMember.member;
+import static hello.querydsl.entity.QTeam.team;
+import static hello.querydsl.repository.MemberSearchPredicates.ageGoe;
+import static hello.querydsl.repository.MemberSearchPredicates.ageLoe;
+import static hello.querydsl.repository.MemberSearchPredicates.teamNameEq;
+import static hello.querydsl.repository.MemberSearchPredicates.usernameEq;
+import static org.springframework.util.StringUtils.hasText;
+
+/*
+    MemberSearchCondition 의 4개 선택 조건으로 만들 수 있는 where 절은 16가지 뿐이다.
+    조건 조합(shape)별로 Querydsl 쿼리(MemberSearchPredicates)를 JPQLSerializer 로 한 번만 JPQL 로 만들어 두고,
+    호출 시에는 위치 파라미터만 바인딩한다. JPQL 문자열이 항상 같으므로 Hibernate 의 query plan cache 도 그대로 재사용된다.
+    - 조건은 username, teamName, ageGoe, ageLoe 순서로 where 에 넣으므로 파라미터 번호도 그 순서다.
+    - Querydsl 은 DTO 생성자를 JPQL 로 내보내지 않으므로 select 한 값을 QMemberTeamDto 로 DTO 로 만든다. (JPAQuery 와 같은 방식)
+ */
+@Component
+public class MemberSearchQueryCache {
+    static final int USERNAME = 1;
+    static final int TEAM_NAME = 1 << 1;
+    static final int AGE_GOE = 1 << 2;
+    static final int AGE_LOE = 1 << 3;
+
+    //true 면 검색 쿼리에 hibernate 쿼리 캐시 힌트를 붙인다 (opt-in)
+    @Value("${querydsl.search.query-cache:false}")
+    private boolean queryCacheable;
+
+    private static final QMemberTeamDto PROJECTION =
+            new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+    private static final ResultTransformer TO_DTO = new ProjectionTransformer();
+
+    private final Map<Integer, String> queries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings({"unchecked", "deprecation"})
+    public TypedQuery<MemberTeamDto> contentQuery(EntityManager em, MemberSearchCondition condition) {
+        int shape = shapeOf(condition);
+        Query query = em.createQuery(jpqlOf(shape))
+                .setHint(QueryHints.HINT_CACHEABLE, queryCacheable);
+        query.unwrap(org.hibernate.query.Query.class).setResultTransformer(TO_DTO);
+        int position = 0;
+        if ((shape & USERNAME) != 0) {
+            query.setParameter(++position, condition.getUsername());
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            query.setParameter(++position, condition.getTeamName());
+        }
+        if ((shape & AGE_GOE) != 0) {
+            query.setParameter(++position, condition.getAgeGoe());
+        }
+        if ((shape & AGE_LOE) != 0) {
+            query.setParameter(++position, condition.getAgeLoe());
+        }
+        return (TypedQuery<MemberTeamDto>) query;
+    }
+
+    public boolean isQueryCacheable() {
+        return queryCacheable;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return queries.size();
+    }
+
+    static int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (hasText(condition.getUsername())) {
+            shape |= USERNAME;
+        }
+        if (hasText(condition.getTeamName())) {
+            shape |= TEAM_NAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= AGE_LOE;
+        }
+        return shape;
+    }
+
+    private String jpqlOf(int shape) {
+        String jpql = queries.get(shape);
+        if (jpql != null) {
+            hits.increment();
+            return jpql;
+        }
+        misses.increment();
+        return queries.computeIfAbsent(shape, MemberSearchQueryCache::buildJpql);
+    }
+
+    private static String buildJpql(int shape) {
+        //값은 호출할 때 다시 바인딩한다. 같은 상수는 파라미터 하나로 합쳐질 수 있으므로 서로 다른 값을 둔다
+        MemberSearchCondition placeholder = new MemberSearchCondition();
+        if ((shape & USERNAME) != 0) {
+            placeholder.setUsername("username");
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            placeholder.setTeamName("teamName");
+        }
+        if ((shape & AGE_GOE) != 0) {
+            placeholder.setAgeGoe(0);
+        }
+        if ((shape & AGE_LOE) != 0) {
+            placeholder.setAgeLoe(1);
+        }
+
+        JPAQuery<MemberTeamDto> query = new JPAQuery<Void>()
+                .select(PROJECTION)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(placeholder.getUsername()),
+                        teamNameEq(placeholder.getTeamName()),
+                        ageGoe(placeholder.getAgeGoe()),
+                        ageLoe(placeholder.getAgeLoe())
+                );
+        JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+        serializer.serialize(query.getMetadata(), false, null);
+        return serializer.toString();
+    }
+
+    //select 절의 값 순서 그대로 MemberTeamDto 생성자에 넘긴다
+    private static class ProjectionTransformer implements ResultTransformer {
+        @Override
+        public Object transformTuple(Object[] tuple, String[] aliases) {
+            return PROJECTION.newInstance(tuple);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public List transformList(List collection) {
+            return collection;
+        }
+    }
+}
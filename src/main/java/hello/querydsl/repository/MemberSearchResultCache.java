@@ -0,0 +1,222 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.repository.support.TransactionBuffer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/*
+    같은 검색 조건이 반복해서 들어오는 대시보드용 결과 캐시.
+    - 정규화된 MemberSearchCondition + Pageable 을 key 로 쓰고, 최대 건수(LRU)와 TTL 로 제거한다.
+    - teamName 조건이 있는 결과는 해당 팀이 바뀔 때만, teamName 조건이 없는 결과는 어떤 회원이 바뀌어도 무효화한다.
+    - 무효화는 즉시 한 번, 트랜잭션이 끝난 뒤(commit/rollback) 한 번 더 해서
+      트랜잭션 도중 다른 요청이 옛 데이터를 다시 채워 넣는 경우도 정리한다.
+    - 무효화할 때마다 버전을 올린다. 조회 전에 key 의 버전을 읽어 두고, 조회하는 동안 무효화되었으면 결과를 넣지 않는다.
+    - 쓰기 트랜잭션 안에서는 커밋되지 않은 데이터가 섞일 수 있으므로 캐시를 읽지도 채우지도 않는다.
+ */
+@Component
+public class MemberSearchResultCache {
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    //무효화 버전 (entries 로 보호). 무효화마다 version 을 올리고 팀 조건 / 전체 / 팀 이름별 마지막 무효화 버전을 남긴다
+    private long version;
+    private long anyInvalidatedAt;
+    private long allInvalidatedAt;
+    private final Map<String, Long> teamInvalidatedAt = new HashMap<>();
+    //트랜잭션이 끝난 뒤 한 번 더 무효화할 대상. 트랜잭션마다 하나에 모으므로 대량 insert 에서도 행마다 synchronization 이 쌓이지 않는다
+    private final TransactionBuffer<PendingInvalidation> pendingInvalidation =
+            TransactionBuffer.afterCompletion(PendingInvalidation::new, this::evict);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public MemberSearchResultCache(@Value("${querydsl.result-cache.enabled:true}") boolean enabled,
+                                   @Value("${querydsl.result-cache.max-size:1000}") int maxSize,
+                                   @Value("${querydsl.result-cache.ttl-millis:30000}") long ttlMillis) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String query, MemberSearchCondition condition, Pageable pageable, Supplier<T> loader) {
+        if (!enabled || inReadWriteTransaction()) {
+            return loader.get();
+        }
+        Key key = Key.of(query, condition, pageable);
+        long now = System.currentTimeMillis();
+        long loadedVersion;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.increment();
+                return (T) entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                expirations.increment();
+            }
+            loadedVersion = versionOf(key);
+        }
+
+        misses.increment();
+        T value = loader.get();
+        synchronized (entries) {
+            //조회하는 동안 무효화되었으면 옛 결과일 수 있으므로 넣지 않는다
+            if (versionOf(key) == loadedVersion) {
+                entries.put(key, new Entry(value, now + ttlMillis));
+                evictOverflow();
+            }
+        }
+        return value;
+    }
+
+    /*
+        teamName 이 null 이면 팀이 없는 회원의 변경이므로 팀 조건 없는 결과만 무효화한다.
+     */
+    public void invalidateTeam(String teamName) {
+        evictTeam(teamName);
+        pendingInvalidation.current().ifPresent(pending -> pending.teamNames.add(teamName));
+    }
+
+    public void invalidateAll() {
+        evictAll();
+        pendingInvalidation.current().ifPresent(pending -> pending.all = true);
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(size, hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), invalidations.sum());
+    }
+
+    private void evictTeam(String teamName) {
+        synchronized (entries) {
+            anyInvalidatedAt = ++version;
+            if (teamName != null) {
+                teamInvalidatedAt.put(teamName, version);
+            }
+            Iterator<Key> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                String cachedTeamName = iterator.next().getTeamName();
+                if (cachedTeamName == null || cachedTeamName.equals(teamName)) {
+                    iterator.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    private void evictAll() {
+        synchronized (entries) {
+            anyInvalidatedAt = ++version;
+            allInvalidatedAt = version;
+            //전체 무효화 이후의 팀별 기록은 allInvalidatedAt 보다 작으므로 필요 없다
+            teamInvalidatedAt.clear();
+            invalidations.add(entries.size());
+            entries.clear();
+        }
+    }
+
+    //teamName 조건이 없는 결과는 어떤 무효화에도, 있는 결과는 전체 또는 그 팀의 무효화에만 영향을 받는다
+    private long versionOf(Key key) {
+        if (key.getTeamName() == null) {
+            return anyInvalidatedAt;
+        }
+        return Math.max(allInvalidatedAt, teamInvalidatedAt.getOrDefault(key.getTeamName(), 0L));
+    }
+
+    private static boolean inReadWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private void evictOverflow() {
+        Iterator<Key> iterator = entries.keySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private void evict(PendingInvalidation pending) {
+        if (pending.all) {
+            evictAll();
+            return;
+        }
+        for (String teamName : pending.teamNames) {
+            evictTeam(teamName);
+        }
+    }
+
+    private static class PendingInvalidation {
+        private final Set<String> teamNames = new HashSet<>();
+        private boolean all;
+    }
+
+    @lombok.Value
+    static class Key {
+        String query;
+        String username;
+        String teamName;
+        Integer ageGoe;
+        Integer ageLoe;
+        Pageable pageable;
+
+        //hasText 로 검색 조건을 판단하므로 빈 문자열은 조건 없음(null)과 같은 key 로 본다
+        static Key of(String query, MemberSearchCondition condition, Pageable pageable) {
+            return new Key(query,
+                    hasText(condition.getUsername()) ? condition.getUsername() : null,
+                    hasText(condition.getTeamName()) ? condition.getTeamName() : null,
+                    condition.getAgeGoe(),
+                    condition.getAgeLoe(),
+                    pageable);
+        }
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @lombok.Value
+    public static class Stats {
+        int size;
+        long hitCount;
+        long missCount;
+        long evictionCount;
+        long expirationCount;
+        long invalidationCount;
+
+        public double getHitRatio() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 0.0 : (double) hitCount / requests;
+        }
+    }
+}
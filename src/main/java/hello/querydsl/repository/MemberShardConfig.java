@@ -0,0 +1,24 @@
+package hello.querydsl.repository;
+
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/*
+    querydsl.sharding.enabled=true 일 때만 샤드 EntityManagerFactory 들을 만든다.
+    꺼져 있으면 MemberShardRepository 빈이 없고 MemberRepositoryImpl 은 기본 DB 만 조회한다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "querydsl.sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(MemberShardProperties.class)
+public class MemberShardConfig {
+    @Bean(destroyMethod = "shutdown")
+    public MemberShardRepository memberShardRepository(MemberShardProperties properties,
+                                                       EntityManagerFactoryBuilder builder,
+                                                       ConfigurableListableBeanFactory beanFactory) {
+        return new MemberShardRepository(properties, builder, beanFactory);
+    }
+}
@@ -0,0 +1,31 @@
+package hello.querydsl.repository;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties("querydsl.sharding")
+public class MemberShardProperties {
+    //true 면 MemberRepositoryCustom.search / searchPageComplex 를 샤드에서 scatter-gather 로 조회한다
+    private boolean enabled;
+    //샤드 JDBC URL. 목록의 순서가 샤드 번호이므로 데이터가 있는 상태에서 순서나 개수를 바꾸면 안 된다
+    private List<String> urls = new ArrayList<>();
+    private String username = "sa";
+    private String password = "";
+    //샤드 스키마 (hibernate.hbm2ddl.auto)
+    private String ddlAuto = "none";
+    private Partition partition = Partition.TEAM_ID;
+    //샤드 조회 대기열 크기 (스레드 수는 샤드 수), 가득 차면 RejectedExecutionException
+    private int queueSize = 100;
+    //샤드 조회 하나의 query timeout. 실행 중인 샤드 조회는 취소할 수 없으므로 이 시간이 지나야 끝난다
+    private long queryTimeoutMillis = 5000;
+
+    public enum Partition {
+        //같은 팀 회원은 한 샤드에 모인다. 팀이 없는 회원은 member_id 로 나눈다
+        TEAM_ID,
+        MEMBER_ID
+    }
+}
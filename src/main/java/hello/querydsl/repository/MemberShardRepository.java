@@ -0,0 +1,380 @@
+package hello.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.dto.QMemberTeamDto;
+import hello.querydsl.entity.Member;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.util.Assert;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static hello.querydsl.entity.QMember.member;
+import static hello.querydsl.entity.QTeam.team;
+import static hello.querydsl.repository.MemberSearchPredicates.ageGoe;
+import static hello.querydsl.repository.MemberSearchPredicates.ageLoe;
+import static hello.querydsl.repository.MemberSearchPredicates.teamNameEq;
+import static hello.querydsl.repository.MemberSearchPredicates.usernameEq;
+import static org.springframework.util.StringUtils.hasText;
+
+/*
+    Member 를 여러 DB(샤드)에 나눠 저장하고, 검색은 샤드에 나눠 보낸 뒤 합친다(scatter-gather). (querydsl.sharding)
+    - 회원은 team_id 로 샤드를 정한다. (팀이 없는 회원이나 partition=MEMBER_ID 면 member_id 로)
+      Team 은 작은 참조 테이블이므로 모든 샤드에 복제해서 팀 join 을 샤드 안에서 끝낸다.
+    - teamName 조건은 팀 이름 -> 샤드 목록(메모리)으로 그 팀이 있는 샤드에만 보낸다. 나머지 조건은 모든 샤드에 병렬로 보낸다.
+    - 샤드마다 member.id 순으로 읽어서 k-way merge 로 합친다. 페이지는 샤드마다 앞에서부터 offset + size 건을 읽어서
+      합친 뒤 자르고, total 은 샤드별 count 의 합이다.
+    - id 는 샤드 간에 겹치지 않도록 여기서 발급한다. 기동할 때 샤드의 최대 id 부터 이어가므로 쓰는 애플리케이션이 하나라는 전제다.
+    - 샤드 간 트랜잭션은 없다. 팀 복제 중 일부 샤드에서 실패하면 예외를 던지고 이미 들어간 샤드의 행은 남는다.
+      saveMembers 도 샤드마다 한 트랜잭션이므로 한 샤드가 실패해도 다른 샤드에 들어간 회원은 남는다.
+    - 샤드 조회에는 query timeout 을 건다. 합치는 중 한 샤드가 실패하면 아직 시작하지 않은 조회만 취소할 수 있고
+      (CompletableFuture.cancel 은 실행 중인 스레드를 멈추지 않는다) 이미 실행 중인 조회는 timeout 으로 끝난다.
+ */
+@Slf4j
+public class MemberShardRepository {
+    private final List<Shard> shards;
+    private final MemberShardProperties.Partition partition;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong memberIds;
+    private final AtomicLong teamIds;
+    //팀 이름 -> 그 이름의 팀 회원이 저장되는 샤드 번호 (partition=TEAM_ID 일 때만)
+    private final Map<String, Set<Integer>> teamShards = new ConcurrentHashMap<>();
+
+    public MemberShardRepository(MemberShardProperties properties, EntityManagerFactoryBuilder builder,
+                                 ConfigurableListableBeanFactory beanFactory) {
+        Assert.notEmpty(properties.getUrls(), "querydsl.sharding.urls must not be empty");
+        this.partition = properties.getPartition();
+        List<Shard> opened = new ArrayList<>();
+        for (int i = 0; i < properties.getUrls().size(); i++) {
+            opened.add(new Shard(i, properties, builder, beanFactory));
+        }
+        this.shards = List.copyOf(opened);
+
+        //샤드 하나에 조회 하나씩 동시에 보낼 수 있는 만큼
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(shards.size(), shards.size(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueSize()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "member-shard-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.memberIds = new AtomicLong(maxId("select max(m.id) from Member m"));
+        this.teamIds = new AtomicLong(maxId("select max(t.id) from Team t"));
+        if (partition == MemberShardProperties.Partition.TEAM_ID) {
+            //팀은 모든 샤드에 복제되어 있으므로 첫 번째 샤드에서 읽는다
+            shards.get(0).read(em -> em.createQuery("select t.id, t.name from Team t", Object[].class).getResultList())
+                    .forEach(row -> registerTeam((Long) row[0], (String) row[1]));
+        }
+        log.info("member shards opened: shards={}, partition={}, lastMemberId={}, lastTeamId={}",
+                shards.size(), partition, memberIds.get(), teamIds.get());
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    //모든 샤드에 같은 id 로 저장한다
+    public Long saveTeam(String name) {
+        long teamId = teamIds.incrementAndGet();
+        for (Shard shard : shards) {
+            shard.write(em -> em.createNativeQuery("insert into team (team_id, name) values (?, ?)")
+                    .setParameter(1, teamId)
+                    .setParameter(2, name)
+                    .executeUpdate());
+        }
+        registerTeam(teamId, name);
+        return teamId;
+    }
+
+    public Long saveMember(String username, int age, Long teamId) {
+        return saveMembers(List.of(new NewMember(username, age, teamId))).get(0);
+    }
+
+    //대량 적재용. 샤드별로 모아서 샤드마다 한 트랜잭션으로 저장하고, 발급한 id 를 입력 순서대로 돌려준다
+    public List<Long> saveMembers(List<NewMember> members) {
+        List<Long> ids = new ArrayList<>(members.size());
+        Map<Integer, List<Integer>> byShard = new TreeMap<>();
+        for (int i = 0; i < members.size(); i++) {
+            long memberId = memberIds.incrementAndGet();
+            ids.add(memberId);
+            byShard.computeIfAbsent(shardOf(memberId, members.get(i).getTeamId()), key -> new ArrayList<>()).add(i);
+        }
+        byShard.forEach((shardIndex, positions) -> shards.get(shardIndex).write(em -> {
+            for (int position : positions) {
+                NewMember newMember = members.get(position);
+                em.createNativeQuery("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)")
+                        .setParameter(1, ids.get(position))
+                        .setParameter(2, newMember.getUsername())
+                        .setParameter(3, newMember.getAge())
+                        .setParameter(4, newMember.getTeamId())
+                        .executeUpdate();
+            }
+        }));
+        return ids;
+    }
+
+    //팀 이름 -> 팀 id. 같은 이름의 팀이 여럿이면 id 가 가장 작은 팀
+    public Map<String, Long> findTeamIds() {
+        Map<String, Long> ids = new HashMap<>();
+        shards.get(0).read(em -> em.createQuery("select t.name, t.id from Team t order by t.id", Object[].class).getResultList())
+                .forEach(row -> ids.putIfAbsent((String) row[0], (Long) row[1]));
+        return ids;
+    }
+
+    //member.id 순
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        List<List<MemberTeamDto>> results = scatter(route(condition), em -> contentQuery(em, condition).fetch());
+        return merge(results, Long.MAX_VALUE);
+    }
+
+    //member.id 순으로 페이징한다. 샤드마다 offset + size 건을 읽으므로 뒤 페이지일수록 비싸다
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(search(condition));
+        }
+        List<Shard> targets = route(condition);
+        long limit = pageable.getOffset() + pageable.getPageSize();
+        List<MemberTeamDto> merged = merge(scatter(targets, em -> contentQuery(em, condition).limit(limit).fetch()), limit);
+        List<MemberTeamDto> content = merged.size() > pageable.getOffset()
+                ? merged.subList((int) pageable.getOffset(), merged.size())
+                : List.of();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> scatter(targets,
+                em -> new MemberCountPlanner(new JPAQueryFactory(em)).plan(condition).fetchCount())
+                .stream().mapToLong(Long::longValue).sum());
+    }
+
+    //조건이 보내질 샤드 번호
+    public List<Integer> shardsFor(MemberSearchCondition condition) {
+        return route(condition).stream().map(shard -> shard.index).collect(Collectors.toList());
+    }
+
+    private List<Shard> route(MemberSearchCondition condition) {
+        if (partition != MemberShardProperties.Partition.TEAM_ID || !hasText(condition.getTeamName())) {
+            return shards;
+        }
+        Set<Integer> owners = teamShards.getOrDefault(condition.getTeamName(), Set.of());
+        return owners.stream().sorted().map(shards::get).collect(Collectors.toList());
+    }
+
+    private int shardOf(long memberId, Long teamId) {
+        if (partition == MemberShardProperties.Partition.TEAM_ID && teamId != null) {
+            return Math.floorMod(teamId, shards.size());
+        }
+        return Math.floorMod(memberId, shards.size());
+    }
+
+    private void registerTeam(Long teamId, String name) {
+        if (partition == MemberShardProperties.Partition.TEAM_ID) {
+            teamShards.computeIfAbsent(name, key -> ConcurrentHashMap.newKeySet())
+                    .add(Math.floorMod(teamId, shards.size()));
+        }
+    }
+
+    private long maxId(String jpql) {
+        return scatter(shards, em -> {
+            Long max = em.createQuery(jpql, Long.class).getSingleResult();
+            return max != null ? max : 0L;
+        }).stream().mapToLong(Long::longValue).max().orElse(0L);
+    }
+
+    private JPAQuery<MemberTeamDto> contentQuery(EntityManager em, MemberSearchCondition condition) {
+        return new JPAQueryFactory(em)
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .orderBy(member.id.asc());
+    }
+
+    //샤드 하나로 라우팅된 조회는 호출한 스레드에서 바로 실행한다
+    //실패하면 아직 시작하지 않은 조회를 취소한다. 실행 중인 조회는 Shard 의 query timeout 으로 끝난다
+    private <T> List<T> scatter(List<Shard> targets, Function<EntityManager, T> query) {
+        if (targets.size() == 1) {
+            return List.of(targets.get(0).read(query));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(targets.size());
+        try {
+            for (Shard shard : targets) {
+                futures.add(CompletableFuture.supplyAsync(() -> shard.read(query), executor));
+            }
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        } catch (RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e instanceof CompletionException && e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    //샤드별로 member.id 순인 목록을 member.id 순으로 합친다. 앞에서부터 limit 건까지만
+    private static List<MemberTeamDto> merge(List<List<MemberTeamDto>> sorted, long limit) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Comparator.comparing((Cursor cursor) -> cursor.head.getMemberId()));
+        for (List<MemberTeamDto> rows : sorted) {
+            if (!rows.isEmpty()) {
+                heads.add(new Cursor(rows.iterator()));
+            }
+        }
+        List<MemberTeamDto> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Cursor cursor = heads.poll();
+            merged.add(cursor.head);
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        shards.forEach(Shard::close);
+    }
+
+    @Value
+    public static class NewMember {
+        String username;
+        int age;
+        Long teamId;
+    }
+
+    private static class Cursor {
+        private final Iterator<MemberTeamDto> rows;
+        private MemberTeamDto head;
+
+        Cursor(Iterator<MemberTeamDto> rows) {
+            this.rows = rows;
+            this.head = rows.next();
+        }
+
+        boolean advance() {
+            if (!rows.hasNext()) {
+                return false;
+            }
+            head = rows.next();
+            return true;
+        }
+    }
+
+    private static class Shard {
+        private final int index;
+        private final HikariDataSource dataSource;
+        private final LocalContainerEntityManagerFactoryBean factory;
+        private final long queryTimeoutMillis;
+
+        Shard(int index, MemberShardProperties properties, EntityManagerFactoryBuilder builder,
+              ConfigurableListableBeanFactory beanFactory) {
+            this.index = index;
+            this.queryTimeoutMillis = properties.getQueryTimeoutMillis();
+            this.dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(properties.getUrls().get(index))
+                    .username(properties.getUsername())
+                    .password(properties.getPassword())
+                    .build();
+            this.dataSource.setPoolName("member-shard-" + index);
+
+            Map<String, Object> jpaProperties = new HashMap<>();
+            jpaProperties.put(AvailableSettings.HBM2DDL_AUTO, properties.getDdlAuto());
+            //샤드끼리, 그리고 기본 DB 와 2차 캐시 region 을 나눠 쓰지 않는다
+            jpaProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+            jpaProperties.put(AvailableSettings.USE_QUERY_CACHE, false);
+            //Member 의 엔티티 리스너(스프링 빈)를 만들 수 있도록 기본 DB 와 같이 스프링 빈 컨테이너를 쓴다
+            jpaProperties.put(AvailableSettings.BEAN_CONTAINER, new SpringBeanContainer(beanFactory));
+            this.factory = builder.dataSource(dataSource)
+                    .packages(Member.class)
+                    .persistenceUnit("member-shard-" + index)
+                    .properties(jpaProperties)
+                    .build();
+            this.factory.afterPropertiesSet();
+        }
+
+        <T> T read(Function<EntityManager, T> query) {
+            //이 EntityManager 로 만든 쿼리에는 모두 query timeout 이 걸린다
+            EntityManager em = factory.getObject().createEntityManager(
+                    Map.of(QueryHints.SPEC_HINT_TIMEOUT, queryTimeoutMillis));
+            try {
+                return query.apply(em);
+            } finally {
+                em.close();
+            }
+        }
+
+        void write(Consumer<EntityManager> work) {
+            EntityManager em = factory.getObject().createEntityManager();
+            EntityTransaction transaction = em.getTransaction();
+            try {
+                transaction.begin();
+                work.accept(em);
+                transaction.commit();
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            } finally {
+                em.close();
+            }
+        }
+
+        void close() {
+            factory.destroy();
+            dataSource.close();
+        }
+    }
+}
@@ -1,35 +1,48 @@
 package hello.querydsl.repository;
 
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import hello.querydsl.dto.MemberSearchCondition;
 import hello.querydsl.entity.Member;
 import hello.querydsl.entity.QMember;
 import hello.querydsl.entity.QTeam;
 import hello.querydsl.repository.support.Querydsl4RepositorySupport;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import static hello.querydsl.entity.QMember.*;
 import static hello.querydsl.entity.QTeam.team;
-import static org.springframework.util.StringUtils.hasText;
+import static hello.querydsl.repository.MemberSearchPredicates.ageGoe;
+import static hello.querydsl.repository.MemberSearchPredicates.ageLoe;
+import static hello.querydsl.repository.MemberSearchPredicates.teamNameEq;
+import static hello.querydsl.repository.MemberSearchPredicates.usernameEq;
 
+@Repository
 public class MemberTestRepository extends Querydsl4RepositorySupport {
     public MemberTestRepository() {
         super(Member.class);
     }
 
+    //조회 전용 목록: 읽기 전용 트랜잭션 + org.hibernate.readOnly 힌트로 스냅샷을 만들지 않는다
+    @Transactional(readOnly = true)
     public List<Member> basicSelect() {
         return select(member)
                 .from(member)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> basicSelectFrom() {
         return selectFrom(member)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .fetch();
     }
 
@@ -78,19 +91,76 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                                 ageLoe(condition.getAgeLoe())));
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    //팀을 fetch join 해도 count 는 join 없이 자동으로 만든다 (teamName 조건이 있을 때만 join 을 남긴다)
+    public Page<Member> searchPageWithTeam(MemberSearchCondition condition, Pageable pageable) {
+        return applyPagination(pageable, query -> query
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+        );
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    public Page<Member> searchPageByApplyPageParallel(MemberSearchCondition condition, Pageable pageable) {
+        return applyPaginationParallel(pageable,
+                contentQuery -> contentQuery
+                        .selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(usernameEq(condition.getUsername()),
+                                teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe())
+                        ),
+                countQuery -> countQuery
+                        .select(member.id)
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(usernameEq(condition.getUsername()),
+                                teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe())));
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    //count 쿼리 없이 다음 페이지 유무만
+    public Slice<Member> searchSliceByApplySlice(MemberSearchCondition condition, Pageable pageable) {
+        return applySlice(pageable, query -> query
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+        );
     }
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    //lastMemberId 다음부터 id 순으로 size 건 (첫 페이지는 null)
+    public Slice<Member> searchSliceByKeyset(MemberSearchCondition condition, Long lastMemberId, int size) {
+        return applyKeyset(member.id, lastMemberId, size, query -> query
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+        );
+    }
+
+    //조건에 맞는 회원 전체를 chunkSize 건씩 처리한다. chunk 사이에 영속성 컨텍스트를 비운다
+    @Transactional(readOnly = true)
+    public long searchInChunks(MemberSearchCondition condition, int chunkSize, Consumer<List<Member>> consumer) {
+        return forEachChunk(selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(usernameEq(condition.getUsername()),
+                                teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe())
+                        )
+                        .orderBy(member.id.asc()),
+                chunkSize, consumer);
     }
 }
@@ -0,0 +1,7 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.entity.Team;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface TeamRepository extends JpaRepository<Team, Long>, TeamRepositoryCustom {
+}
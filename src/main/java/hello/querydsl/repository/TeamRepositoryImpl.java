@@ -0,0 +1,77 @@
+package hello.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import hello.querydsl.dto.MemberDto;
+import hello.querydsl.dto.TeamMembersDto;
+import hello.querydsl.entity.Team;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.support.Querydsl;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static hello.querydsl.entity.QMember.member;
+import static hello.querydsl.entity.QTeam.team;
+
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+    private final JPAQueryFactory queryFactory;
+    //pageable 의 정렬을 적용한다. 별칭은 QTeam.team 과 같은 "team"
+    private final Querydsl querydsl;
+
+    public TeamRepositoryImpl(EntityManager em) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.querydsl = new Querydsl(em, new PathBuilder<>(Team.class, team.getMetadata()));
+    }
+
+    /*
+        컬렉션 fetch join + offset/limit 은 hibernate 가 전체를 읽어서 메모리에서 페이징하므로 두 단계로 나눈다.
+        1. 팀만 페이징해서 조회
+        2. 그 팀 id 들의 회원을 in 절 한 번으로 조회해서 팀별로 묶는다
+        페이지 크기와 상관없이 쿼리는 팀 1 + 회원 1 (+ 필요할 때 count 1) 번이다.
+        팀 정렬은 pageable 을 따르고, 같은 값끼리 페이지가 흔들리지 않도록 마지막에 team.id 를 붙인다.
+     */
+    @Override
+    public Page<TeamMembersDto> searchTeamsWithMembers(Pageable pageable) {
+        JPAQuery<Tuple> teamQuery = queryFactory
+                .select(team.id, team.name)
+                .from(team);
+        querydsl.applySorting(pageable.getSort(), teamQuery);
+        List<Tuple> teams = teamQuery
+                .orderBy(team.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        Map<Long, TeamMembersDto> content = new LinkedHashMap<>();
+        for (Tuple row : teams) {
+            content.put(row.get(team.id), new TeamMembersDto(row.get(team.id), row.get(team.name)));
+        }
+
+        if (!content.isEmpty()) {
+            List<Tuple> members = queryFactory
+                    .select(member.team.id, member.username, member.age)
+                    .from(member)
+                    .where(member.team.id.in(content.keySet()))
+                    .orderBy(member.id.asc())
+                    .fetch();
+            for (Tuple row : members) {
+                content.get(row.get(member.team.id)).getMembers()
+                        .add(new MemberDto(row.get(member.username), row.get(member.age)));
+            }
+        }
+
+        JPAQuery<Long> countQuery = queryFactory
+                .select(team.count())
+                .from(team);
+
+        return PageableExecutionUtils.getPage(new ArrayList<>(content.values()), pageable, countQuery::fetchOne);
+    }
+}
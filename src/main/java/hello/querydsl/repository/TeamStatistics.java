@@ -0,0 +1,325 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.TeamStatsDto;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.Team;
+import hello.querydsl.repository.support.EntityChangeListener;
+import hello.querydsl.repository.support.TransactionBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/*
+    팀별 회원 수 / 나이 합계 / 평균 / 최소 / 최대를 메모리에 유지한다. 조회는 팀 수만큼만 읽는다. (O(teams))
+    - 나이 변경, 팀 변경(Member.changeTeam), 삭제는 이전 값이 필요하므로 JPA 콜백 대신 hibernate post insert/update/delete 이벤트를 쓴다.
+    - 변경은 트랜잭션마다 모았다가 커밋된 뒤에 반영한다. 최소/최대는 팀별 나이 -> 인원 히스토그램으로 유지해서 삭제에도 맞게 움직인다.
+    - JPQL 벌크 연산이나 이전 상태를 알 수 없는 변경 뒤에는 stale 로 표시하고, 다음 조회 때 group by 한 번으로 전체를 다시 만든다.
+      벌크 연산에는 hibernate 이벤트가 없으므로 MemberJpaRepository.executeBulk 로 실행하거나 markStale 을 직접 불러야 한다.
+    - 쓰기 트랜잭션을 막지 않도록 락 대신 세대(generation)를 쓴다. 재적재는 시작할 때와 끝날 때 세대를 하나씩 올리고,
+      트랜잭션은 변경을 처음 기록할 때의 세대를 남긴다. 커밋된 뒤 세대가 그대로이고 재적재 중이 아닐 때만 변경을 반영하고,
+      재적재와 겹친 트랜잭션은 재적재 결과에 포함됐는지 알 수 없으므로 stale 로 표시한다.
+    - stale 을 본 조회가 동시에 여러 개여도 group by 는 한 번만 실행하고 나머지는 그 결과를 기다린다.
+ */
+@Slf4j
+@Component
+public class TeamStatistics implements EntityChangeListener {
+    @PersistenceContext
+    private EntityManager em;
+    private final TransactionTemplate loadTransaction;
+    private final Object mutex = new Object();
+    private final Map<Long, Aggregate> teams = new HashMap<>();
+    private volatile boolean stale = true;
+    //재적재가 시작되고 끝날 때마다 하나씩 오른다 (홀수면 재적재 중), mutex 로 보호
+    private long generation;
+    //진행 중인 재적재, 없으면 null (mutex 로 보호)
+    private CompletableFuture<Void> rebuilding;
+    //변경은 트랜잭션마다 하나의 Pending 에 모았다가 커밋된 뒤에 반영한다
+    private final TransactionBuffer<Pending> pending = TransactionBuffer.afterCommit(Pending::new, this::apply);
+
+    public TeamStatistics(PlatformTransactionManager transactionManager) {
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    //팀 id 순
+    public List<TeamStatsDto> getStatistics() {
+        if (stale) {
+            rebuild();
+        }
+        List<TeamStatsDto> result = new ArrayList<>();
+        synchronized (mutex) {
+            teams.forEach((teamId, aggregate) -> result.add(aggregate.toDto(teamId)));
+        }
+        result.sort(Comparator.comparing(TeamStatsDto::getTeamId));
+        return result;
+    }
+
+    //진행 중인 재적재가 있으면 새로 시작하지 않고 그 결과를 기다린다
+    public void rebuild() {
+        CompletableFuture<Void> running;
+        synchronized (mutex) {
+            if (rebuilding != null) {
+                running = rebuilding;
+            } else {
+                running = null;
+                rebuilding = new CompletableFuture<>();
+                generation++;
+                stale = false;
+            }
+        }
+        if (running != null) {
+            running.join();
+            return;
+        }
+
+        CompletableFuture<Void> done;
+        try {
+            Map<Long, Aggregate> rebuilt = load();
+            synchronized (mutex) {
+                teams.clear();
+                teams.putAll(rebuilt);
+                done = finishRebuild();
+            }
+            log.debug("team statistics rebuilt: teams={}", rebuilt.size());
+        } catch (RuntimeException e) {
+            synchronized (mutex) {
+                stale = true;
+                done = finishRebuild();
+            }
+            done.completeExceptionally(e);
+            throw e;
+        }
+        done.complete(null);
+    }
+
+    private CompletableFuture<Void> finishRebuild() {
+        CompletableFuture<Void> done = rebuilding;
+        rebuilding = null;
+        generation++;
+        return done;
+    }
+
+    private Map<Long, Aggregate> load() {
+        return loadTransaction.execute(status -> {
+            Map<Long, Aggregate> loaded = new HashMap<>();
+            em.createQuery("select t.id, t.name, m.age, count(m) from Team t left join t.members m" +
+                            " group by t.id, t.name, m.age", Object[].class)
+                    .getResultList()
+                    .forEach(row -> {
+                        Aggregate aggregate = loaded.computeIfAbsent((Long) row[0], id -> new Aggregate((String) row[1]));
+                        long count = (Long) row[3];
+                        if (count > 0) {
+                            aggregate.add((Integer) row[2], count);
+                        }
+                    });
+            return loaded;
+        });
+    }
+
+    //어떤 회원이 바뀌었는지 알 수 없는 변경(JPQL 벌크 연산 등) 후: 커밋되면 다음 조회 때 다시 만든다
+    public void markStale() {
+        pending.current().ifPresentOrElse(current -> current.stale = true, () -> stale = true);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            EntityPersister persister = event.getPersister();
+            Object[] state = event.getState();
+            record(Change.add(teamIdOf(value(persister, state, "team")), (Integer) value(persister, state, "age")));
+        } else if (event.getEntity() instanceof Team) {
+            record(Change.team((Long) event.getId(), ((Team) event.getEntity()).getName()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            EntityPersister persister = event.getPersister();
+            Object[] oldState = event.getOldState();
+            if (oldState == null) {
+                //detached 엔티티를 update 한 경우 등 이전 값이 없으면 다시 만든다
+                markStale();
+                return;
+            }
+            Long oldTeamId = teamIdOf(value(persister, oldState, "team"));
+            Integer oldAge = (Integer) value(persister, oldState, "age");
+            Long newTeamId = teamIdOf(value(persister, event.getState(), "team"));
+            Integer newAge = (Integer) value(persister, event.getState(), "age");
+            if (!Objects.equals(oldTeamId, newTeamId) || !Objects.equals(oldAge, newAge)) {
+                record(Change.remove(oldTeamId, oldAge));
+                record(Change.add(newTeamId, newAge));
+            }
+        } else if (event.getEntity() instanceof Team) {
+            record(Change.team((Long) event.getId(), ((Team) event.getEntity()).getName()));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            EntityPersister persister = event.getPersister();
+            Object[] state = event.getDeletedState();
+            record(Change.remove(teamIdOf(value(persister, state, "team")), (Integer) value(persister, state, "age")));
+        } else if (event.getEntity() instanceof Team) {
+            record(Change.teamRemoved((Long) event.getId()));
+        }
+    }
+
+    private static Object value(EntityPersister persister, Object[] state, String property) {
+        return state[persister.getEntityMetamodel().getPropertyIndex(property)];
+    }
+
+    //프록시를 초기화하지 않고 팀 id 를 꺼낸다
+    private static Long teamIdOf(Object team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return ((Team) team).getId();
+    }
+
+    //트랜잭션 밖의 flush 는 커밋 시점을 알 수 없으므로 다시 만든다
+    private void record(Change change) {
+        pending.current().ifPresentOrElse(current -> current.changes.add(change), () -> stale = true);
+    }
+
+    //재적재와 겹친 트랜잭션의 변경은 스냅샷에 이미 들어갔을 수도 있으므로 반영하지 않고 stale 로 표시한다
+    private void apply(Pending pending) {
+        synchronized (mutex) {
+            if (pending.stale || pending.generation != generation || rebuilding != null) {
+                stale = true;
+                return;
+            }
+            for (Change change : pending.changes) {
+                change.applyTo(teams);
+            }
+        }
+    }
+
+    private class Pending {
+        private final List<Change> changes = new ArrayList<>();
+        private final long generation;
+        private boolean stale;
+
+        Pending() {
+            synchronized (mutex) {
+                this.generation = TeamStatistics.this.generation;
+            }
+        }
+    }
+
+    private enum Kind {ADD, REMOVE, TEAM, TEAM_REMOVED}
+
+    private static class Change {
+        private final Kind kind;
+        private final Long teamId;
+        private final Integer age;
+        private final String teamName;
+
+        private Change(Kind kind, Long teamId, Integer age, String teamName) {
+            this.kind = kind;
+            this.teamId = teamId;
+            this.age = age;
+            this.teamName = teamName;
+        }
+
+        static Change add(Long teamId, Integer age) {
+            return new Change(Kind.ADD, teamId, age, null);
+        }
+
+        static Change remove(Long teamId, Integer age) {
+            return new Change(Kind.REMOVE, teamId, age, null);
+        }
+
+        static Change team(Long teamId, String teamName) {
+            return new Change(Kind.TEAM, teamId, null, teamName);
+        }
+
+        static Change teamRemoved(Long teamId) {
+            return new Change(Kind.TEAM_REMOVED, teamId, null, null);
+        }
+
+        //팀이 없는 회원은 집계하지 않는다 (querydslGroupBy 와 같이 inner join 기준)
+        void applyTo(Map<Long, Aggregate> teams) {
+            if (teamId == null) {
+                return;
+            }
+            switch (kind) {
+                case ADD:
+                    teams.computeIfAbsent(teamId, id -> new Aggregate(null)).add(age, 1);
+                    break;
+                case REMOVE:
+                    Aggregate aggregate = teams.get(teamId);
+                    if (aggregate != null) {
+                        aggregate.remove(age);
+                    }
+                    break;
+                case TEAM:
+                    teams.computeIfAbsent(teamId, id -> new Aggregate(null)).name = teamName;
+                    break;
+                case TEAM_REMOVED:
+                    teams.remove(teamId);
+                    break;
+            }
+        }
+    }
+
+    private static class Aggregate {
+        private String name;
+        private long count;
+        private long sum;
+        private final TreeMap<Integer, Long> ages = new TreeMap<>();
+
+        Aggregate(String name) {
+            this.name = name;
+        }
+
+        void add(int age, long members) {
+            count += members;
+            sum += (long) age * members;
+            ages.merge(age, members, Long::sum);
+        }
+
+        void remove(int age) {
+            count--;
+            sum -= age;
+            ages.computeIfPresent(age, (key, members) -> members > 1 ? members - 1 : null);
+        }
+
+        TeamStatsDto toDto(Long teamId) {
+            if (count == 0) {
+                return new TeamStatsDto(teamId, name, 0, 0, null, null, null);
+            }
+            return new TeamStatsDto(teamId, name, count, sum, (double) sum / count, ages.firstKey(), ages.lastKey());
+        }
+    }
+}
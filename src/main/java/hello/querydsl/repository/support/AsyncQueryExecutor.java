@@ -0,0 +1,67 @@
+package hello.querydsl.repository.support;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 리포지토리 조회를 요청 스레드 대신 전용 JDBC 스레드 풀에서 읽기 전용 트랜잭션으로 실행한다.
+ * <p>
+ * 스레드 수가 곧 비동기 조회가 동시에 쓸 수 있는 커넥션 수이므로 DB 커넥션 풀보다 작게 잡는다.
+ * 풀과 대기열이 모두 차면 요청 스레드에서 대신 실행하지 않고 RejectedExecutionException 으로 실패한 future 를 돌려준다.
+ * (요청 스레드가 커넥션 풀 앞에 쌓이지 않게 하는 것이 목적이므로 CallerRunsPolicy 를 쓰지 않는다)
+ */
+@Component
+public class AsyncQueryExecutor {
+    private final ThreadPoolExecutor executor;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public AsyncQueryExecutor(PlatformTransactionManager transactionManager,
+                              @Value("${querydsl.async.threads:4}") int threads,
+                              @Value("${querydsl.async.queue-size:100}") int queueSize) {
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "async-query-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> query) {
+        try {
+            return CompletableFuture.supplyAsync(() -> readOnlyTransaction.execute(status -> query.get()), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    //실행 중이거나 대기 중인 조회 수 (모니터링용)
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,197 @@
+package hello.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.MapExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * content 쿼리의 메타데이터에서 페이징용 count 쿼리를 만든다.
+ * <ul>
+ * <li>projection, orderBy, offset / limit 과 fetch join 표시를 뺀다.</li>
+ * <li>where 나 남은 다른 join 에서 쓰지 않는 to-one left join 을 뺀다. (row 수를 바꾸지 않음)
+ * distinct 로 루트 엔티티를 조회하는 쿼리면 쓰지 않는 to-many left join 도 뺀다.</li>
+ * <li>distinct 조회인데 to-many join 이 남아 있을 때만 count(distinct 루트), 나머지는 count(루트).</li>
+ * </ul>
+ * group by / having 이 있거나, 루트 엔티티가 아닌 값을 distinct 로 조회하면 Optional.empty() 를 돌려준다.
+ * (호출한 쪽에서 fetchCount 로 대신한다)
+ */
+public final class CountQueries {
+
+    private CountQueries() {
+    }
+
+    public static Optional<JPAQuery<Long>> derive(EntityManager entityManager, JPAQuery<?> contentQuery) {
+        QueryMetadata source = contentQuery.getMetadata();
+        if (!source.getGroupBy().isEmpty() || source.getHaving() != null) {
+            return Optional.empty();
+        }
+        List<JoinExpression> joins = source.getJoins();
+        if (joins.isEmpty() || joins.get(0).getType() != JoinType.DEFAULT) {
+            return Optional.empty();
+        }
+        Expression<?> root = aliasOf(joins.get(0).getTarget());
+        boolean distinctRoot = source.isDistinct();
+        if (distinctRoot && !root.equals(source.getProjection())) {
+            return Optional.empty();
+        }
+
+        //뒤에서부터 보면서 빼도 되는 join 을 고른다. 뒤의 join 이 앞 join 의 alias 를 쓰면 앞 join 도 남긴다
+        Set<Expression<?>> referenced = new HashSet<>();
+        collectRoots(source.getWhere(), referenced);
+        List<JoinExpression> kept = new ArrayList<>();
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            if (isRemovable(join, referenced, distinctRoot)) {
+                continue;
+            }
+            kept.add(0, join);
+            collectRoots(sourceOf(join.getTarget()), referenced);
+            collectRoots(join.getCondition(), referenced);
+        }
+
+        boolean toMany = kept.stream().anyMatch(join -> isToMany(join.getTarget()));
+        DefaultQueryMetadata metadata = new DefaultQueryMetadata().noValidate();
+        for (JoinExpression join : kept) {
+            metadata.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                metadata.addJoinCondition(join.getCondition());
+            }
+            for (JoinFlag flag : join.getFlags()) {
+                if (!flag.equals(JPAQueryMixin.FETCH) && !flag.equals(JPAQueryMixin.FETCH_ALL_PROPERTIES)) {
+                    metadata.addJoinFlag(flag);
+                }
+            }
+        }
+        metadata.addWhere(source.getWhere());
+        copyParams(source.getParams(), metadata);
+        metadata.setProjection(Expressions.numberOperation(Long.class,
+                distinctRoot && toMany ? Ops.AggOps.COUNT_DISTINCT_AGG : Ops.AggOps.COUNT_AGG, root));
+        return Optional.of(new JPAQuery<>(entityManager, metadata));
+    }
+
+    //join 에서 빼도 row 수가 그대로인 경우: 쓰지 않는 left join 이면서 to-one 이거나, distinct 루트 조회의 to-many
+    private static boolean isRemovable(JoinExpression join, Set<Expression<?>> referenced, boolean distinctRoot) {
+        if (join.getType() != JoinType.LEFTJOIN || referenced.contains(aliasOf(join.getTarget()))) {
+            return false;
+        }
+        Expression<?> source = sourceOf(join.getTarget());
+        if (source == null) {
+            //leftJoin(team).on(...) 같은 연관관계 없는 join 은 row 수를 알 수 없으므로 남긴다
+            return false;
+        }
+        return !isToMany(join.getTarget()) || distinctRoot;
+    }
+
+    private static boolean isToMany(Expression<?> target) {
+        Expression<?> source = sourceOf(target);
+        return source instanceof CollectionExpression || source instanceof MapExpression;
+    }
+
+    //leftJoin(member.team, team) 의 target 은 alias(member.team, team)
+    private static Expression<?> sourceOf(Expression<?> target) {
+        if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+            return ((Operation<?>) target).getArg(0);
+        }
+        return null;
+    }
+
+    private static Expression<?> aliasOf(Expression<?> target) {
+        if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+            return ((Operation<?>) target).getArg(1);
+        }
+        return target;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void copyParams(Map<ParamExpression<?>, Object> params, DefaultQueryMetadata metadata) {
+        params.forEach((param, value) -> metadata.setParam((ParamExpression) param, value));
+    }
+
+    private static void collectRoots(Expression<?> expression, Set<Expression<?>> roots) {
+        if (expression != null) {
+            expression.accept(RootCollector.INSTANCE, roots);
+        }
+    }
+
+    //식에서 쓰는 path 의 루트(alias)를 모은다. 서브쿼리 안에서 바깥 alias 를 쓰는 경우도 포함한다
+    private static final class RootCollector implements Visitor<Void, Set<Expression<?>>> {
+        private static final RootCollector INSTANCE = new RootCollector();
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Expression<?>> roots) {
+            expr.getArgs().forEach(arg -> collectRoots(arg, roots));
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Expression<?>> roots) {
+            expr.getArgs().forEach(arg -> collectRoots(arg, roots));
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Expression<?>> roots) {
+            roots.add(expr.getRoot());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Expression<?>> roots) {
+            QueryMetadata metadata = expr.getMetadata();
+            metadata.getJoins().forEach(join -> {
+                collectRoots(join.getTarget(), roots);
+                collectRoots(join.getCondition(), roots);
+            });
+            collectRoots(metadata.getWhere(), roots);
+            collectRoots(metadata.getProjection(), roots);
+            collectRoots(metadata.getHaving(), roots);
+            metadata.getGroupBy().forEach(group -> collectRoots(group, roots));
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Expression<?>> roots) {
+            expr.getArgs().forEach(arg -> {
+                if (arg instanceof Expression) {
+                    collectRoots((Expression<?>) arg, roots);
+                }
+            });
+            return null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package hello.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionException;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Visitor;
+import org.springframework.util.ClassUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Projections.constructor / Projections.bean 과 같은 방식으로 select(...) 에 넣어 쓰는 DTO 프로젝션.
+ * <p>
+ * 생성자와 setter 는 DTO 타입별로 한 번만 찾아서 MethodHandle / LambdaMetafactory 로 만든 람다로 캐시하고,
+ * 행마다 리플렉션을 호출하지 않는다. DTO 에 @QueryProjection 을 붙일 필요도 없다.
+ *
+ * <pre>
+ * select(DtoProjections.constructor(MemberDto.class, member.username, member.age))
+ * select(DtoProjections.bean(UserDto.class, member.username.as("name"), member.age))
+ * </pre>
+ */
+public final class DtoProjections {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Map<List<Object>, Instantiator> CACHE = new ConcurrentHashMap<>();
+
+    private DtoProjections() {
+    }
+
+    public static <T> FactoryExpressionBase<T> constructor(Class<? extends T> type, Expression<?>... args) {
+        List<Object> key = List.of("constructor", type, Arrays.asList(typesOf(args)));
+        Instantiator instantiator = CACHE.computeIfAbsent(key, k -> constructorInstantiator(type, typesOf(args)));
+        return new DtoProjection<>(type, List.of(args), instantiator);
+    }
+
+    public static <T> FactoryExpressionBase<T> bean(Class<? extends T> type, Expression<?>... args) {
+        String[] names = namesOf(args);
+        List<Object> key = List.of("bean", type, Arrays.asList(names));
+        Instantiator instantiator = CACHE.computeIfAbsent(key, k -> beanInstantiator(type, names));
+        return new DtoProjection<>(type, List.of(args), instantiator);
+    }
+
+    private interface Instantiator {
+        Object newInstance(Object[] args) throws Throwable;
+    }
+
+    private static class DtoProjection<T> extends FactoryExpressionBase<T> {
+        private final List<Expression<?>> args;
+        private final Instantiator instantiator;
+
+        private DtoProjection(Class<? extends T> type, List<Expression<?>> args, Instantiator instantiator) {
+            super(type);
+            this.args = args;
+            this.instantiator = instantiator;
+        }
+
+        @Override
+        public List<Expression<?>> getArgs() {
+            return args;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Object... values) {
+            try {
+                return (T) instantiator.newInstance(values);
+            } catch (Throwable e) {
+                throw new ExpressionException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public <R, C> R accept(Visitor<R, C> v, C context) {
+            return v.visit(this, context);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof DtoProjection)) {
+                return false;
+            }
+            DtoProjection<?> other = (DtoProjection<?>) obj;
+            return getType().equals(other.getType()) && args.equals(other.args);
+        }
+    }
+
+    //(Object...) -> Object 형태로 맞춘 생성자 핸들. 기본형 파라미터는 asType 이 언박싱한다
+    private static Instantiator constructorInstantiator(Class<?> type, Class<?>[] argTypes) {
+        Constructor<?> constructor = findConstructor(type, argTypes);
+        try {
+            MethodHandle handle = LOOKUP.unreflectConstructor(constructor)
+                    .asType(MethodType.genericMethodType(argTypes.length))
+                    .asSpreader(Object[].class, argTypes.length);
+            return values -> (Object) handle.invokeExact(values);
+        } catch (IllegalAccessException e) {
+            throw new ExpressionException(e.getMessage(), e);
+        }
+    }
+
+    //기본 생성자는 Supplier, setter 는 BiConsumer 람다로 만든다. 기본형 setter 에 null 이 오면 건너뛴다
+    @SuppressWarnings("unchecked")
+    private static Instantiator beanInstantiator(Class<?> type, String[] names) {
+        try {
+            MethodHandle noArgs = LOOKUP.findConstructor(type, MethodType.methodType(void.class));
+            Supplier<Object> factory = (Supplier<Object>) LambdaMetafactory.metafactory(LOOKUP, "get",
+                    MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+                    noArgs, MethodType.methodType(type)).getTarget().invoke();
+
+            BiConsumer<Object, Object>[] setters = new BiConsumer[names.length];
+            boolean[] primitives = new boolean[names.length];
+            for (int i = 0; i < names.length; i++) {
+                Method method = findSetter(type, names[i]);
+                Class<?> paramType = method.getParameterTypes()[0];
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        LOOKUP.unreflect(method),
+                        MethodType.methodType(void.class, type, ClassUtils.resolvePrimitiveIfNecessary(paramType)));
+                setters[i] = (BiConsumer<Object, Object>) site.getTarget().invoke();
+                primitives[i] = paramType.isPrimitive();
+            }
+
+            return values -> {
+                Object bean = factory.get();
+                for (int i = 0; i < setters.length; i++) {
+                    if (values[i] != null || !primitives[i]) {
+                        setters[i].accept(bean, values[i]);
+                    }
+                }
+                return bean;
+            };
+        } catch (Throwable e) {
+            throw new ExpressionException("cannot create bean projection for " + type.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Constructor<?> findConstructor(Class<?> type, Class<?>[] argTypes) {
+        for (Constructor<?> constructor : type.getConstructors()) {
+            Class<?>[] paramTypes = constructor.getParameterTypes();
+            if (paramTypes.length != argTypes.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < paramTypes.length && matches; i++) {
+                matches = ClassUtils.resolvePrimitiveIfNecessary(paramTypes[i])
+                        .isAssignableFrom(ClassUtils.resolvePrimitiveIfNecessary(argTypes[i]));
+            }
+            if (matches) {
+                return constructor;
+            }
+        }
+        throw new ExpressionException("no constructor of " + type.getName() + " for " + Arrays.toString(argTypes));
+    }
+
+    private static Method findSetter(Class<?> type, String name) {
+        String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(setterName) && method.getParameterCount() == 1) {
+                return method;
+            }
+        }
+        throw new ExpressionException("no setter " + setterName + " in " + type.getName());
+    }
+
+    private static Class<?>[] typesOf(Expression<?>[] args) {
+        Class<?>[] types = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            types[i] = args[i].getType();
+        }
+        return types;
+    }
+
+    //Projections.bean 과 같이 path 이름이나 as(...) 로 준 alias 를 프로퍼티 이름으로 쓴다
+    private static String[] namesOf(Expression<?>[] args) {
+        String[] names = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            Expression<?> arg = args[i];
+            if (arg instanceof Path) {
+                names[i] = ((Path<?>) arg).getMetadata().getName();
+            } else if (arg instanceof Operation && ((Operation<?>) arg).getOperator() == Ops.ALIAS) {
+                names[i] = ((Operation<?>) arg).getArg(1).toString();
+            } else {
+                throw new ExpressionException("bean projection argument needs an alias: " + arg);
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,20 @@
+package hello.querydsl.repository.support;
+
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * 엔티티의 저장/변경/삭제를 받는 hibernate 이벤트 리스너.
+ * <p>
+ * 스프링 빈으로 등록하면 EntityChangeListenerRegistrar 가 post insert/update/delete 이벤트에 붙인다.
+ * 엔티티가 리포지토리 패키지에 의존하지 않도록 JPA 엔티티 리스너 대신 이 방식을 쓴다.
+ * 이벤트는 flush 시점(커밋 전)에 오므로, 커밋된 뒤에 반영하려면 TransactionBuffer 에 모은다.
+ */
+public interface EntityChangeListener extends PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+    @Override
+    default boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
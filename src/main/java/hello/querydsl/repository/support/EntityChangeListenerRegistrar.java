@@ -0,0 +1,35 @@
+package hello.querydsl.repository.support;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * 스프링 빈인 EntityChangeListener 를 모두 hibernate post insert/update/delete 이벤트에 등록한다.
+ */
+@Component
+public class EntityChangeListenerRegistrar {
+    private final EntityManagerFactory emf;
+    private final List<EntityChangeListener> listeners;
+
+    public EntityChangeListenerRegistrar(EntityManagerFactory emf, List<EntityChangeListener> listeners) {
+        this.emf = emf;
+        this.listeners = listeners;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        for (EntityChangeListener listener : listeners) {
+            registry.appendListeners(EventType.POST_INSERT, listener);
+            registry.appendListeners(EventType.POST_UPDATE, listener);
+            registry.appendListeners(EventType.POST_DELETE, listener);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package hello.querydsl.repository.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 페이징 조회의 count 쿼리를 별도 읽기 전용 EntityManager(커넥션)에서 content 쿼리와 동시에 실행한다.
+ * <p>
+ * content 는 호출 스레드(현재 트랜잭션의 EntityManager)에서, count 는 크기가 제한된 전용 스레드 풀에서 실행한다.
+ * content 가 실패하면 count 를 취소하고, count 가 실패하면 그 예외를 그대로 던진다.
+ * <p>
+ * count 스레드는 호출 스레드와 같은 커넥션 풀에서 커넥션을 하나 더 빌리므로, 요청 스레드가 커넥션을 모두 잡은 채 count 를 기다리면
+ * 풀이 멈출 수 있다. 그래서
+ * - 스레드 수는 커넥션 풀 크기(maximumPoolSize)보다 작아야 한다.
+ * - count 는 timeout 까지만 기다리고, 풀과 대기열이 가득 찼거나 timeout 이 지나면 호출 스레드의 EntityManager 로
+ *   count 를 순차 실행한다. (커넥션을 더 빌리지 않는다)
+ * - 취소는 스레드 interrupt 일 뿐 JDBC 문장을 멈추지 않으므로 count 쿼리에 같은 값의 query timeout 을 건다.
+ * <p>
+ * count 를 미리 시작하므로 PageableExecutionUtils 가 count 를 생략할 수 있는 마지막 페이지에서도 count 가 실행된다.
+ * 또 count 는 현재 트랜잭션 밖에서 실행되므로 아직 커밋되지 않은 변경은 보이지 않는다.
+ */
+@Slf4j
+@Component
+public class ParallelCountExecutor {
+    private final EntityManagerFactory emf;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    public ParallelCountExecutor(EntityManagerFactory emf, DataSource dataSource,
+                                 @Value("${querydsl.parallel-count.threads:4}") int threads,
+                                 @Value("${querydsl.parallel-count.queue-size:100}") int queueSize,
+                                 @Value("${querydsl.parallel-count.timeout-millis:3000}") long timeoutMillis) {
+        this.emf = emf;
+        this.timeoutMillis = timeoutMillis;
+        int maximumPoolSize = maximumPoolSize(dataSource);
+        Assert.isTrue(maximumPoolSize <= 0 || threads < maximumPoolSize,
+                "querydsl.parallel-count.threads must be smaller than the connection pool size: " + maximumPoolSize);
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "parallel-count-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    //em 은 호출 스레드의 EntityManager. count 를 병렬로 실행하지 못하면 여기서 순차 실행한다
+    public <T> Page<T> getPage(EntityManager em, Pageable pageable,
+                               Supplier<List<T>> content, Function<EntityManager, Long> count) {
+        Future<Long> total;
+        try {
+            total = executor.submit(() -> countReadOnly(count));
+        } catch (RejectedExecutionException e) {
+            log.debug("parallel count pool is full, counting sequentially");
+            return PageableExecutionUtils.getPage(content.get(), pageable, () -> count.apply(em));
+        }
+
+        List<T> rows;
+        try {
+            rows = content.get();
+        } catch (RuntimeException | Error e) {
+            total.cancel(true);
+            throw e;
+        }
+
+        Page<T> page = PageableExecutionUtils.getPage(rows, pageable, () -> await(total, em, count));
+        //total 을 추론해서 count 를 기다리지 않은 경우 아직 실행 중인 count 를 멈춘다 (끝났으면 아무 일도 없음)
+        total.cancel(true);
+        return page;
+    }
+
+    private Long countReadOnly(Function<EntityManager, Long> count) {
+        //이 EntityManager 로 만든 쿼리에는 모두 query timeout 이 걸린다
+        EntityManager em = emf.createEntityManager(Map.of(QueryHints.SPEC_HINT_TIMEOUT, timeoutMillis));
+        try {
+            Session session = em.unwrap(Session.class);
+            session.setDefaultReadOnly(true);
+            session.doWork(connection -> connection.setReadOnly(true));
+            return count.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    private long await(Future<Long> total, EntityManager em, Function<EntityManager, Long> count) {
+        try {
+            Long result = total.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return result != null ? result : 0L;
+        } catch (TimeoutException e) {
+            //커넥션을 얻지 못했거나 count 가 느리다. 호출 스레드의 커넥션으로 다시 센다
+            total.cancel(true);
+            log.warn("parallel count did not finish in {}ms, counting sequentially", timeoutMillis);
+            Long result = count.apply(em);
+            return result != null ? result : 0L;
+        } catch (InterruptedException e) {
+            total.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for count query", e);
+        } catch (CancellationException e) {
+            throw new IllegalStateException("count query was cancelled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("count query failed", cause);
+        }
+    }
+
+    //HikariCP 가 아니면 0 (검사하지 않는다)
+    private static int maximumPoolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.debug("cannot read connection pool size", e);
+        }
+        return 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
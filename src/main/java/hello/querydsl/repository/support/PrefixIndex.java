@@ -0,0 +1,348 @@
+package hello.querydsl.repository.support;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 문자열(이름) -> id 의 불변 prefix 인덱스.
+ * <p>
+ * 이름은 정렬된 배열에 한 번씩만(중복 제거) 저장하고, 이름별 id 는 offsets 로 나눈 하나의 long 배열에 저장한다.
+ * prefix 검색은 이분 탐색으로 시작 위치를 찾은 뒤 prefix 가 맞는 동안만 앞으로 읽는다.
+ * <p>
+ * 변경은 apply 로 반영한 새 인스턴스를 돌려준다. 정렬 배열은 그대로 두고 변경 묶음 하나를 layer 로 위에 쌓으므로
+ * 비용은 변경 건수에만 비례한다. (이전 layer 를 복사하지 않는다) 어떤 layer 에 들어 있는 id 는 배열과 아래 layer 의 값을 가린다.
+ * layer 가 쌓이면 compact 로 합치는데, 배열 전체를 다시 만들 수 있으므로 호출하는 쪽에서 백그라운드로 실행하고
+ * 그동안 쌓인 layer 는 rebase 로 결과 위에 다시 올린다.
+ * 인스턴스가 불변이므로 읽는 쪽은 잠금 없이 검색한다.
+ */
+public final class PrefixIndex {
+    //layer 의 변경 건수가 이 값과 배열 크기의 1/8 중 큰 값을 넘으면 배열로 합친다 (배열 크기에 비례하므로 합치는 비용은 분할 상환된다)
+    static final int MERGE_THRESHOLD = 1024;
+    //layer 가 이만큼 쌓이면 배열로 합칠 만큼이 아니어도 layer 끼리 하나로 합친다 (검색은 layer 수에 비례)
+    static final int MAX_LAYERS = 16;
+    public static final PrefixIndex EMPTY = builder().build();
+
+    private final String[] names;
+    private final int[] offsets;
+    private final long[] ids;
+    //배열에 있는 id 를 숫자 순으로 정렬한 것 (배열에 있는 id 인지 이분 탐색으로 확인)
+    private final long[] sortedIds;
+    //오래된 것부터
+    private final List<Layer> layers;
+    private final int layerChanges;
+    private final int size;
+
+    private PrefixIndex(String[] names, int[] offsets, long[] ids, long[] sortedIds, List<Layer> layers, int size) {
+        this.names = names;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.sortedIds = sortedIds;
+        this.layers = layers;
+        this.layerChanges = layers.stream().mapToInt(layer -> layer.changes.size()).sum();
+        this.size = size;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    //value 가 null 이면 삭제
+    public PrefixIndex apply(Map<Long, String> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+        int newSize = size;
+        for (Map.Entry<Long, String> change : changes.entrySet()) {
+            boolean present = contains(change.getKey());
+            if (present && change.getValue() == null) {
+                newSize--;
+            } else if (!present && change.getValue() != null) {
+                newSize++;
+            }
+        }
+        List<Layer> newLayers = new ArrayList<>(layers.size() + 1);
+        newLayers.addAll(layers);
+        newLayers.add(new Layer(changes));
+        return new PrefixIndex(names, offsets, ids, sortedIds, Collections.unmodifiableList(newLayers), newSize);
+    }
+
+    public boolean needsCompaction() {
+        return layers.size() >= MAX_LAYERS || layerChanges > mergeThreshold();
+    }
+
+    /*
+        layer 를 합친 새 인스턴스. 변경이 많으면 배열과 합쳐서 다시 만들고(배열 크기에 비례), 적으면 layer 끼리만 합친다.
+        검색 결과는 바뀌지 않는다.
+     */
+    public PrefixIndex compact() {
+        if (layers.isEmpty()) {
+            return this;
+        }
+        Map<Long, String> latest = new HashMap<>();
+        for (Layer layer : layers) {
+            latest.putAll(layer.changes);
+        }
+        if (layerChanges > mergeThreshold()) {
+            return merge(latest);
+        }
+        return new PrefixIndex(names, offsets, ids, sortedIds, List.of(new Layer(latest)), size);
+    }
+
+    /*
+        snapshot 을 compact 한 결과(compacted) 위에, snapshot 이후 이 인스턴스에 쌓인 layer 를 다시 올린다.
+        이 인스턴스가 snapshot 에 apply 만 해서 만들어진 것이 아니면(그 사이 다시 적재한 경우 등) null.
+     */
+    public PrefixIndex rebase(PrefixIndex snapshot, PrefixIndex compacted) {
+        if (ids != snapshot.ids || layers.size() < snapshot.layers.size()) {
+            return null;
+        }
+        for (int i = 0; i < snapshot.layers.size(); i++) {
+            if (layers.get(i) != snapshot.layers.get(i)) {
+                return null;
+            }
+        }
+        List<Layer> newLayers = new ArrayList<>(compacted.layers);
+        newLayers.addAll(layers.subList(snapshot.layers.size(), layers.size()));
+        //compact 는 내용을 바꾸지 않으므로 크기는 이 인스턴스와 같다
+        return new PrefixIndex(compacted.names, compacted.offsets, compacted.ids, compacted.sortedIds,
+                Collections.unmodifiableList(newLayers), size);
+    }
+
+    //이름, id 순으로 최대 limit 건
+    public List<Match> search(String prefix, int limit) {
+        List<Match> fromArray = new ArrayList<>();
+        int i = lowerBound(prefix);
+        scan:
+        for (; i < names.length && names[i].startsWith(prefix); i++) {
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                if (!shadowed(ids[j], 0)) {
+                    fromArray.add(new Match(ids[j], names[i]));
+                    if (fromArray.size() == limit) {
+                        break scan;
+                    }
+                }
+            }
+        }
+        if (layers.isEmpty()) {
+            return fromArray;
+        }
+
+        //layer 마다 앞에서부터 최대 limit 건을 모아서 정렬한다
+        List<Match> fromLayers = new ArrayList<>();
+        for (int l = 0; l < layers.size(); l++) {
+            int found = 0;
+            scan:
+            for (Map.Entry<String, long[]> entry : layers.get(l).added.tailMap(prefix, true).entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) {
+                    break;
+                }
+                for (long id : entry.getValue()) {
+                    if (!shadowed(id, l + 1)) {
+                        fromLayers.add(new Match(id, entry.getKey()));
+                        if (++found == limit) {
+                            break scan;
+                        }
+                    }
+                }
+            }
+        }
+        Collections.sort(fromLayers);
+        return mergeSorted(fromArray, fromLayers, limit);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int distinctNames() {
+        return names.length;
+    }
+
+    private int mergeThreshold() {
+        return Math.max(MERGE_THRESHOLD, ids.length / 8);
+    }
+
+    //from 번째 이후 layer 에 들어 있으면 가려진다
+    private boolean shadowed(long id, int from) {
+        for (int l = from; l < layers.size(); l++) {
+            if (layers.get(l).changes.containsKey(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean contains(long id) {
+        for (int l = layers.size() - 1; l >= 0; l--) {
+            Map<Long, String> changes = layers.get(l).changes;
+            if (changes.containsKey(id)) {
+                return changes.get(id) != null;
+            }
+        }
+        return Arrays.binarySearch(sortedIds, id) >= 0;
+    }
+
+    private int lowerBound(String prefix) {
+        int index = Arrays.binarySearch(names, prefix);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    //배열과 layer 의 최종 값을 이름, id 순으로 한 번에 훑어서 새 배열을 만든다
+    private PrefixIndex merge(Map<Long, String> latest) {
+        List<Match> added = new ArrayList<>(latest.size());
+        latest.forEach((id, name) -> {
+            if (name != null) {
+                added.add(new Match(id, name));
+            }
+        });
+        Collections.sort(added);
+
+        String[] newNames = new String[names.length + added.size()];
+        int[] newOffsets = new int[names.length + added.size() + 1];
+        long[] newIds = new long[ids.length + added.size()];
+        int nameCount = 0;
+        int idCount = 0;
+        int a = 0;
+        for (int i = 0; i <= names.length; i++) {
+            //배열의 i 번째 이름보다 앞서는 layer 항목을 먼저 넣는다
+            while (a < added.size() && (i == names.length || added.get(a).name.compareTo(names[i]) < 0)) {
+                nameCount = appendName(newNames, newOffsets, nameCount, idCount, added.get(a).name);
+                newIds[idCount++] = added.get(a++).id;
+            }
+            if (i == names.length) {
+                break;
+            }
+            int start = idCount;
+            int j = offsets[i];
+            while (j < offsets[i + 1] || (a < added.size() && added.get(a).name.equals(names[i]))) {
+                boolean fromLayer = a < added.size() && added.get(a).name.equals(names[i])
+                        && (j == offsets[i + 1] || added.get(a).id < ids[j]);
+                if (fromLayer) {
+                    newIds[idCount++] = added.get(a++).id;
+                } else if (!latest.containsKey(ids[j])) {
+                    newIds[idCount++] = ids[j++];
+                } else {
+                    j++;
+                }
+            }
+            if (idCount > start) {
+                nameCount = appendName(newNames, newOffsets, nameCount, start, names[i]);
+            }
+        }
+        newOffsets[nameCount] = idCount;
+
+        long[] mergedIds = Arrays.copyOf(newIds, idCount);
+        long[] mergedSortedIds = mergedIds.clone();
+        Arrays.sort(mergedSortedIds);
+        return new PrefixIndex(Arrays.copyOf(newNames, nameCount), Arrays.copyOf(newOffsets, nameCount + 1),
+                mergedIds, mergedSortedIds, List.of(), idCount);
+    }
+
+    //이름이 바뀌는 위치에서만 새 이름을 추가한다
+    private static int appendName(String[] names, int[] offsets, int nameCount, int position, String name) {
+        if (nameCount > 0 && names[nameCount - 1].equals(name)) {
+            return nameCount;
+        }
+        names[nameCount] = name;
+        offsets[nameCount] = position;
+        return nameCount + 1;
+    }
+
+    private static List<Match> mergeSorted(List<Match> a, List<Match> b, int limit) {
+        List<Match> merged = new ArrayList<>(Math.min(limit, a.size() + b.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < a.size() || j < b.size())) {
+            if (j == b.size() || (i < a.size() && a.get(i).compareTo(b.get(j)) <= 0)) {
+                merged.add(a.get(i++));
+            } else {
+                merged.add(b.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    //한 번의 apply 로 들어온 변경. 이름별 id 는 정렬해 둔다
+    private static final class Layer {
+        private final Map<Long, String> changes;
+        private final NavigableMap<String, long[]> added;
+
+        private Layer(Map<Long, String> changes) {
+            this.changes = Collections.unmodifiableMap(new HashMap<>(changes));
+            TreeMap<String, List<Long>> grouped = new TreeMap<>();
+            changes.forEach((id, name) -> {
+                if (name != null) {
+                    grouped.computeIfAbsent(name, k -> new ArrayList<>()).add(id);
+                }
+            });
+            TreeMap<String, long[]> added = new TreeMap<>();
+            grouped.forEach((name, idList) -> added.put(name, idList.stream().mapToLong(Long::longValue).sorted().toArray()));
+            this.added = Collections.unmodifiableNavigableMap(added);
+        }
+    }
+
+    @Getter
+    public static final class Match implements Comparable<Match> {
+        private final long id;
+        private final String name;
+
+        private Match(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : Long.compare(id, other.id);
+        }
+    }
+
+    /*
+        입력 순서와 상관없이 이름 순으로 정렬해서 만든다.
+        같은 이름은 하나의 String 인스턴스만 남기므로 DB 에서 읽은 중복 문자열은 빌드가 끝나면 GC 된다.
+     */
+    public static final class Builder {
+        private final TreeMap<String, List<Long>> entries = new TreeMap<>();
+        private int count;
+
+        private Builder() {
+        }
+
+        public Builder add(String name, long id) {
+            if (name != null) {
+                entries.computeIfAbsent(name, k -> new ArrayList<>()).add(id);
+                count++;
+            }
+            return this;
+        }
+
+        public PrefixIndex build() {
+            String[] names = new String[entries.size()];
+            int[] offsets = new int[entries.size() + 1];
+            long[] ids = new long[count];
+            int i = 0;
+            int position = 0;
+            for (Map.Entry<String, List<Long>> entry : entries.entrySet()) {
+                names[i] = entry.getKey();
+                offsets[i] = position;
+                long[] group = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+                System.arraycopy(group, 0, ids, position, group.length);
+                position += group.length;
+                i++;
+            }
+            offsets[i] = position;
+            long[] sortedIds = ids.clone();
+            Arrays.sort(sortedIds);
+            return new PrefixIndex(names, offsets, ids, sortedIds, List.of(), count);
+        }
+    }
+}
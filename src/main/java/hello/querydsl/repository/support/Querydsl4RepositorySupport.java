@@ -3,12 +3,19 @@ package hello.querydsl.repository.support;
 
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.Querydsl;
@@ -19,8 +26,14 @@ import org.springframework.util.Assert;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
 
 /**
  * Querydsl 4.x 버전에 맞춘 Querydsl 지원 라이브러리
@@ -35,6 +48,7 @@ public abstract class Querydsl4RepositorySupport {
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private ParallelCountExecutor parallelCountExecutor;
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
         this.domainClass = domainClass;
@@ -51,6 +65,10 @@ public abstract class Querydsl4RepositorySupport {
                 PathBuilder<>(path.getType(), path.getMetadata()));
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
+    @Autowired(required = false)
+    public void setParallelCountExecutor(ParallelCountExecutor parallelCountExecutor) {
+        this.parallelCountExecutor = parallelCountExecutor;
+    }
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
@@ -73,14 +91,20 @@ public abstract class Querydsl4RepositorySupport {
         return getQueryFactory().selectFrom(from);
     }
 
+    /*
+        count 쿼리는 content 쿼리에서 자동으로 만든다. (CountQueries)
+        fetch join, projection, orderBy 와 where 에서 쓰지 않는 to-one left join 을 뺀 count 를 실행하고,
+        만들 수 없는 쿼리(group by 등)면 content 쿼리의 fetchCount 로 대신한다.
+     */
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery) {
 
         JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        //applyPagination 이 content 쿼리에 orderBy / offset / limit 을 붙이기 전에 만든다
+        LongSupplier countSupplier = countOf(jpaQuery);
         List<T> content = getQuerydsl().applyPagination(pageable, jpaQuery).fetch();
 
-        return PageableExecutionUtils.getPage(content, pageable,
-                jpaQuery::fetchCount);
+        return PageableExecutionUtils.getPage(content, pageable, countSupplier);
     }
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
@@ -92,4 +116,105 @@ public abstract class Querydsl4RepositorySupport {
         return PageableExecutionUtils.getPage(content, pageable,
                 countResult::fetchCount);
     }
+
+    /*
+        count 쿼리를 별도 읽기 전용 EntityManager 에서 content 쿼리와 동시에 실행한다. (ParallelCountExecutor)
+        ParallelCountExecutor 가 없으면 applyPagination 과 같이 순차 실행한다.
+     */
+    protected <T> Page<T> applyPaginationParallel(Pageable pageable,
+                                                  Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
+            JPAQuery> countQuery) {
+        if (parallelCountExecutor == null) {
+            return applyPagination(pageable, contentQuery, countQuery);
+        }
+        return parallelCountExecutor.getPage(getEntityManager(), pageable,
+                () -> getQuerydsl().applyPagination(pageable, contentQuery.apply(getQueryFactory())).fetch(),
+                countEm -> countQuery.apply(new JPAQueryFactory(countEm)).fetchCount());
+    }
+
+    /*
+        count 쿼리 없이 size + 1 건을 읽어서 다음 페이지가 있는지만 판단한다. (무한 스크롤)
+        정렬과 offset 은 applyPagination 과 같이 pageable 을 따른다.
+     */
+    protected <T> Slice<T> applySlice(Pageable pageable,
+                                      Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        getQuerydsl().applySorting(pageable.getSort(), jpaQuery);
+        if (pageable.isPaged()) {
+            jpaQuery.offset(pageable.getOffset()).limit(pageable.getPageSize() + 1L);
+        }
+        List<T> content = jpaQuery.fetch();
+        return toSlice(content, pageable);
+    }
+
+    /*
+        count 도 offset 도 없는 커서(keyset) 방식. key 오름차순으로 after 다음부터 size + 1 건을 읽는다.
+        key 는 유일해야 하고(보통 id), 다음 요청의 after 는 마지막 건의 key 를 넘긴다. (첫 페이지는 null)
+        offset 을 건너뛰지 않으므로 뒤 페이지로 가도 인덱스 범위 스캔 한 번으로 끝난다.
+     */
+    protected <T, K extends Comparable<?>> Slice<T> applyKeyset(ComparableExpressionBase<K> key, K after, int size,
+                                                                Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        Assert.isTrue(size > 0, "size must be greater than 0");
+        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        if (after != null) {
+            jpaQuery.where(Expressions.booleanOperation(Ops.GT, key, Expressions.constant(after)));
+        }
+        List<T> content = jpaQuery
+                .orderBy(key.asc())
+                .limit(size + 1L)
+                .fetch();
+        return toSlice(content, PageRequest.of(0, size));
+    }
+
+    /*
+        결과 전체를 chunkSize 건씩 나눠서 consumer 에 넘긴다. 한 번의 쿼리를 forward-only 커서로 읽고,
+        chunk 를 넘긴 뒤마다 EntityManager 를 비우므로 결과 건수와 상관없이 메모리 사용량이 일정하다.
+        커서가 열려 있는 동안 커넥션을 쓰므로 트랜잭션 안에서 호출해야 하고,
+        clear 로 호출한 쪽이 가지고 있던 영속 엔티티도 준영속이 되므로 chunk 처리 전에 flush 할 것은 flush 해 둔다.
+        반환값은 처리한 건수.
+     */
+    protected <T> long forEachChunk(JPAQuery query, int chunkSize, Consumer<List<T>> consumer) {
+        Assert.isTrue(chunkSize > 0, "chunkSize must be greater than 0");
+        long count = 0;
+        List<T> chunk = new ArrayList<>(chunkSize);
+        try (Stream<T> stream = query.setHint(QueryHints.HINT_FETCH_SIZE, chunkSize).stream()) {
+            Iterator<T> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == chunkSize) {
+                    count += acceptChunk(chunk, consumer);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            count += acceptChunk(chunk, consumer);
+        }
+        return count;
+    }
+
+    private LongSupplier countOf(JPAQuery<?> contentQuery) {
+        Optional<JPAQuery<Long>> countQuery = CountQueries.derive(getEntityManager(), contentQuery);
+        if (countQuery.isEmpty()) {
+            return contentQuery::fetchCount;
+        }
+        return () -> {
+            Long count = countQuery.get().fetchOne();
+            return count != null ? count : 0L;
+        };
+    }
+
+    private <T> int acceptChunk(List<T> chunk, Consumer<List<T>> consumer) {
+        consumer.accept(chunk);
+        getEntityManager().clear();
+        return chunk.size();
+    }
+
+    private static <T> Slice<T> toSlice(List<T> content, Pageable pageable) {
+        boolean hasNext = pageable.isPaged() && content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content = content.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
 }
@@ -0,0 +1,74 @@
+package hello.querydsl.repository.support;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 트랜잭션 하나의 변경을 값(P) 하나에 모아 두었다가 트랜잭션이 끝난 뒤 한 번에 처리한다.
+ * <p>
+ * 트랜잭션에서 처음 current 를 부를 때 P 를 만들어 이 객체를 key 로 bind 하고 synchronization 을 하나만 등록한다.
+ * 대량 insert 에서도 행마다 synchronization 이 쌓이지 않는다. 트랜잭션이 끝나면 unbind 한다.
+ * <p>
+ * afterCommit 은 커밋됐을 때만(롤백된 변경은 버린다), afterCompletion 은 커밋/롤백 모두 처리한다.
+ * synchronization 이 없으면(트랜잭션 밖) current 는 Optional.empty() 이고, 그때 어떻게 할지는 호출하는 쪽이 정한다.
+ */
+public final class TransactionBuffer<P> {
+    private final Supplier<P> factory;
+    private final Consumer<P> action;
+    private final boolean commitOnly;
+
+    private TransactionBuffer(Supplier<P> factory, Consumer<P> action, boolean commitOnly) {
+        this.factory = factory;
+        this.action = action;
+        this.commitOnly = commitOnly;
+    }
+
+    public static <P> TransactionBuffer<P> afterCommit(Supplier<P> factory, Consumer<P> action) {
+        return new TransactionBuffer<>(factory, action, true);
+    }
+
+    public static <P> TransactionBuffer<P> afterCompletion(Supplier<P> factory, Consumer<P> action) {
+        return new TransactionBuffer<>(factory, action, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Optional<P> current() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return Optional.empty();
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending(factory.get());
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return Optional.of(pending.value);
+    }
+
+    private class Pending implements TransactionSynchronization {
+        private final P value;
+
+        private Pending(P value) {
+            this.value = value;
+        }
+
+        @Override
+        public void afterCommit() {
+            if (commitOnly) {
+                action.accept(value);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransactionBuffer.this);
+            if (!commitOnly) {
+                action.accept(value);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ import hello.querydsl.entity.Member;
 import hello.querydsl.entity.QMember;
 import hello.querydsl.entity.QTeam;
 import hello.querydsl.entity.Team;
+import hello.querydsl.repository.support.DtoProjections;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -571,6 +572,27 @@ public class QuerydslBasicTest {
 
     }
 
+    /*
+        DtoProjections: 생성자/setter 를 MethodHandle, LambdaMetafactory 로 캐시해서 행마다 리플렉션을 쓰지 않는다.
+        @QueryProjection 없이 쓸 수 있다.
+     */
+    @Test
+    void findDto_dtoProjections() {
+        List<MemberDto> byConstructor = query
+                .select(DtoProjections.constructor(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch();
+
+        List<UserDto> byBean = query
+                .select(DtoProjections.bean(UserDto.class, member.username.as("name"), member.age))
+                .from(member)
+                .fetch();
+
+        assertThat(byConstructor).extracting("username").contains("memberA", "memberD");
+        assertThat(byBean).extracting("name").contains("memberA", "memberD");
+        assertThat(byBean).extracting("age").contains(10, 40);
+    }
+
     @Test
     void distinct() {
         List<Member> fetch = query
@@ -0,0 +1,145 @@
+package hello.querydsl.controller;
+
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.QMember;
+import hello.querydsl.entity.QTeam;
+import hello.querydsl.entity.Team;
+import hello.querydsl.repository.MemberJpaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+    POST /members/bulk 는 chunk 마다 트랜잭션을 커밋하므로 @Transactional 롤백 대신 끝나면 데이터를 지운다.
+    chunk 경계를 확인하기 위해 chunk 크기를 2 로 둔다.
+ */
+@SpringBootTest(properties = "querydsl.bulk.chunk-size=2")
+@AutoConfigureMockMvc
+class MemberBulkImporterTest {
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Autowired
+    MockMvc mockMvc;
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> em.persist(new Team("bulkTeam")));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QMember.member)
+                .where(QMember.member.username.like("bulk%")));
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QTeam.team)
+                .where(QTeam.team.name.like("bulk%")));
+    }
+
+    @Test
+    void jsonArrayIsImportedInChunks() throws Exception {
+        mockMvc.perform(post("/members/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"username\":\"bulk1\",\"age\":10,\"teamName\":\"bulkTeam\"},"
+                                + "{\"username\":\"bulk2\",\"age\":20,\"teamName\":\"bulkTeam\"},"
+                                + "{\"username\":\"bulk3\",\"age\":30}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalRows").value(3))
+                .andExpect(jsonPath("$.insertedRows").value(3))
+                .andExpect(jsonPath("$.chunks").value(2))
+                .andExpect(jsonPath("$.failedChunks", hasSize(0)));
+
+        assertThat(importedMembers()).extracting("username").containsExactly("bulk1", "bulk2", "bulk3");
+    }
+
+    @Test
+    void ndjsonCreatesUnknownTeamOnce() throws Exception {
+        mockMvc.perform(post("/members/bulk")
+                        .contentType(NDJSON)
+                        .content("{\"username\":\"bulk1\",\"age\":10,\"teamName\":\"bulkNewTeam\"}\n"
+                                + "{\"username\":\"bulk2\",\"age\":20,\"teamName\":\"bulkNewTeam\"}\n"
+                                + "{\"username\":\"bulk3\",\"age\":30,\"teamName\":\"bulkNewTeam\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.insertedRows").value(3))
+                .andExpect(jsonPath("$.failedRows").value(0));
+
+        //첫 chunk 에서 만든 팀을 다음 chunk 가 그대로 쓴다
+        List<Member> members = importedMembers();
+        assertThat(members).extracting("team.name").containsOnly("bulkNewTeam");
+        assertThat(members).extracting("team.id").containsOnly(members.get(0).getTeam().getId());
+    }
+
+    @Test
+    void typeMismatchedRowIsSkipped() throws Exception {
+        mockMvc.perform(post("/members/bulk")
+                        .contentType(NDJSON)
+                        .content("{\"username\":\"bulk1\",\"age\":10}\n"
+                                + "{\"username\":\"bulk2\",\"age\":\"ten\",\"teamName\":\"bulkTeam\"}\n"
+                                + "{\"username\":\"bulk3\",\"age\":30,\"teamName\":\"bulkTeam\"}\n"
+                                + "{\"username\":\"bulk4\",\"age\":-1}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalRows").value(4))
+                .andExpect(jsonPath("$.insertedRows").value(2))
+                .andExpect(jsonPath("$.failedRows").value(2))
+                .andExpect(jsonPath("$.failedChunks[0].chunk").value(0))
+                .andExpect(jsonPath("$.failedChunks[0].errors[0]", startsWith("row 1: invalid row")))
+                .andExpect(jsonPath("$.failedChunks[1].chunk").value(1))
+                .andExpect(jsonPath("$.failedChunks[1].errors[0]").value("row 3: age must be zero or positive"));
+
+        assertThat(importedMembers()).extracting("username").containsExactly("bulk1", "bulk3");
+    }
+
+    @Test
+    void malformedInputStopsInTheChunkThatReadIt() throws Exception {
+        mockMvc.perform(post("/members/bulk")
+                        .contentType(NDJSON)
+                        .content("{\"username\":\"bulk1\",\"age\":10}\n"
+                                + "{\"username\":\"bulk2\",\"age\":20}\n"
+                                + "{\"username\":\"bulk3\",\"age\":30}\n"
+                                + "{\"username\":\"bulk4\","))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalRows").value(4))
+                .andExpect(jsonPath("$.insertedRows").value(3))
+                .andExpect(jsonPath("$.chunks").value(2))
+                .andExpect(jsonPath("$.failedChunks", hasSize(1)))
+                .andExpect(jsonPath("$.failedChunks[0].chunk").value(1))
+                .andExpect(jsonPath("$.failedChunks[0].lastRow").value(3))
+                .andExpect(jsonPath("$.failedChunks[0].errors[0]", startsWith("row 3: malformed input")));
+
+        assertThat(importedMembers()).extracting("username").containsExactly("bulk1", "bulk2", "bulk3");
+    }
+
+    private List<Member> importedMembers() {
+        return tx.execute(status -> em.createQuery(
+                        "select m from Member m left join fetch m.team where m.username like 'bulk%' order by m.username",
+                        Member.class)
+                .getResultList());
+    }
+}
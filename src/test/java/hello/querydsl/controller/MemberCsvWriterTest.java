@@ -0,0 +1,47 @@
+package hello.querydsl.controller;
+
+import hello.querydsl.dto.MemberTeamDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberCsvWriterTest {
+
+    @Test
+    void writesRowsAsCsv() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemberCsvWriter writer = new MemberCsvWriter(out, 1024)) {
+            writer.writeHeader();
+            writer.write(new MemberTeamDto(1L, "member1", 10, 100L, "teamA"));
+            writer.write(new MemberTeamDto(Long.MAX_VALUE, "kim, \"jr\"", 0, null, null));
+            writer.write(new MemberTeamDto(Long.MIN_VALUE, "line\nbreak", -7, 0L, "팀"));
+        }
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "memberId,username,age,teamId,teamName\r\n" +
+                "1,member1,10,100,teamA\r\n" +
+                Long.MAX_VALUE + ",\"kim, \"\"jr\"\"\",0,,\r\n" +
+                Long.MIN_VALUE + ",\"line\nbreak\",-7,0,팀\r\n");
+    }
+
+    @Test
+    void encodesUtf8AcrossBufferBoundaries() throws IOException {
+        //버퍼보다 긴 행, 2/3/4 바이트 문자와 짝이 없는 서로게이트
+        String username = "회원😀é".repeat(20) + "\uD800";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemberCsvWriter writer = new MemberCsvWriter(out, 64)) {
+            writer.writeHeader();
+            for (int i = 0; i < 3; i++) {
+                writer.write(new MemberTeamDto((long) i, username, 20, 1L, "teamA"));
+            }
+        }
+
+        String row = "," + username + ",20,1,teamA\r\n";
+        String expected = "memberId,username,age,teamId,teamName\r\n" + "0" + row + "1" + row + "2" + row;
+        assertThat(out.toByteArray()).isEqualTo(expected.getBytes(StandardCharsets.UTF_8));
+    }
+}
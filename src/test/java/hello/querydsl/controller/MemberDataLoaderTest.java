@@ -0,0 +1,55 @@
+package hello.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.LongToIntFunction;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberDataLoaderTest {
+
+    @Test
+    void distributeEvenlyWithoutSkew() {
+        assertThat(MemberDataLoader.distribute(100, 2, 0)).containsExactly(50, 50);
+        //나누어 떨어지지 않는 나머지는 첫 번째 팀에
+        assertThat(MemberDataLoader.distribute(10, 3, 0)).containsExactly(4, 3, 3);
+        assertThat(MemberDataLoader.distribute(0, 0, 0)).isEmpty();
+    }
+
+    @Test
+    void distributeSkewedTowardsFirstTeams() {
+        //가중치 1, 1/2, 1/3
+        long[] counts = MemberDataLoader.distribute(100, 3, 1);
+
+        assertThat(counts).containsExactly(55, 27, 18);
+        assertThat(LongStream.of(counts).sum()).isEqualTo(100);
+    }
+
+    @Test
+    void defaultLayoutAlternatesTeams() {
+        //기본값(팀 2개, 50명씩): member0 -> teamA, member1 -> teamB, ...
+        LongToIntFunction teamOf = MemberDataLoader.assignment(MemberDataLoader.distribute(100, 2, 0), 0);
+
+        assertThat(LongStream.range(0, 6).mapToInt(teamOf::applyAsInt).toArray()).containsExactly(0, 1, 0, 1, 0, 1);
+        assertThat(LongStream.range(0, 100).filter(seq -> teamOf.applyAsInt(seq) == 0).count()).isEqualTo(50);
+        assertThat(teamOf.applyAsInt(99)).isEqualTo(1);
+    }
+
+    @Test
+    void skewedLayoutFillsTeamsInOrder() {
+        LongToIntFunction teamOf = MemberDataLoader.assignment(new long[]{55, 27, 18}, 1);
+
+        assertThat(teamOf.applyAsInt(0)).isEqualTo(0);
+        assertThat(teamOf.applyAsInt(54)).isEqualTo(0);
+        assertThat(teamOf.applyAsInt(55)).isEqualTo(1);
+        assertThat(teamOf.applyAsInt(81)).isEqualTo(1);
+        assertThat(teamOf.applyAsInt(82)).isEqualTo(2);
+        assertThat(teamOf.applyAsInt(99)).isEqualTo(2);
+
+        //회원이 0명인 팀은 건너뛴다
+        LongToIntFunction withEmptyTeam = MemberDataLoader.assignment(new long[]{2, 0, 1}, 3);
+        assertThat(withEmptyTeam.applyAsInt(1)).isEqualTo(0);
+        assertThat(withEmptyTeam.applyAsInt(2)).isEqualTo(2);
+    }
+}
@@ -0,0 +1,88 @@
+package hello.querydsl.controller;
+
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.repository.MemberJpaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/*
+    실패한 export 가 정상 파일처럼 끝나지 않는지는 실제 컨테이너에서만 확인할 수 있으므로 내장 톰캣으로 요청한다.
+    DB 커서 대신 forEachSearch 가 행을 흘려보내다 실패하도록 바꾼다.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MemberExportTest {
+    @LocalServerPort
+    int port;
+    @SpyBean
+    MemberJpaRepository memberJpaRepository;
+
+    HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void gzipExportIsCompleteOnSuccess() throws Exception {
+        stubRows(3, false);
+
+        HttpResponse<byte[]> response = get("/v1/members/export?gzip=true");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(response.body())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        assertThat(csv).isEqualTo("memberId,username,age,teamId,teamName\r\n" +
+                "0,export0,0,1,teamA\r\n" +
+                "1,export1,10,1,teamA\r\n" +
+                "2,export2,20,1,teamA\r\n");
+    }
+
+    @Test
+    void failureBeforeCommitIsServerError() throws Exception {
+        stubRows(3, true);
+
+        HttpResponse<byte[]> response = get("/v1/members/export?gzip=true");
+
+        //gzip trailer 가 붙은 200 이 아니라 500
+        assertThat(response.statusCode()).isEqualTo(500);
+    }
+
+    @Test
+    void failureAfterCommitAbortsResponse() {
+        //export 버퍼(64KB)보다 많이 써서 응답이 커밋된 뒤에 실패한다
+        stubRows(20_000, true);
+
+        assertThatThrownBy(() -> get("/v1/members/export")).isInstanceOf(IOException.class);
+    }
+
+    private void stubRows(int rows, boolean fail) {
+        doAnswer(invocation -> {
+            Consumer<MemberTeamDto> consumer = invocation.getArgument(1);
+            for (int i = 0; i < rows; i++) {
+                consumer.accept(new MemberTeamDto((long) i, "export" + i, i * 10, 1L, "teamA"));
+            }
+            if (fail) {
+                throw new IllegalStateException("cursor failed");
+            }
+            return (long) rows;
+        }).when(memberJpaRepository).forEachSearch(any(), any());
+    }
+
+    private HttpResponse<byte[]> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
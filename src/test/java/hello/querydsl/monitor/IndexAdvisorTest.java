@@ -0,0 +1,82 @@
+package hello.querydsl.monitor;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.repository.MemberRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+@SpringBootTest
+class IndexAdvisorTest {
+    @Autowired
+    IndexAdvisor indexAdvisor;
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    void setUp() {
+        indexAdvisor.reset();
+    }
+
+    @Test
+    void recordsSearchShapesAndExplainsThem() {
+        MemberSearchCondition byUsername = new MemberSearchCondition();
+        byUsername.setUsername("member1");
+        MemberSearchCondition byUsernameAndAge = new MemberSearchCondition();
+        byUsernameAndAge.setUsername("member1");
+        byUsernameAndAge.setAgeGoe(10);
+
+        memberRepository.searchPageComplex(byUsername, PageRequest.of(0, 10));
+        memberRepository.searchPageComplex(byUsername, PageRequest.of(1, 10));
+        memberRepository.search(byUsernameAndAge);
+
+        List<IndexAdvisor.Advice> advice = indexAdvisor.advise();
+
+        assertThat(advice).extracting("shape").containsExactly("username", "username,ageGoe");
+        assertThat(advice).extracting("calls").containsExactly(2L, 1L);
+        //idx_member_username 이 있으므로 username 조건은 table scan 이 없다
+        assertThat(advice.get(0).getPlan()).containsIgnoringCase("IDX_MEMBER_USERNAME");
+        assertThat(advice.get(0).isTableScan()).isFalse();
+        assertThat(advice.get(0).getSuggestions()).isEmpty();
+    }
+
+    @Test
+    void doesNotSuggestIndexesThatAlreadyExist() {
+        MemberSearchCondition byAge = new MemberSearchCondition();
+        byAge.setAgeGoe(10);
+        byAge.setAgeLoe(20);
+        memberRepository.search(byAge);
+
+        List<IndexAdvisor.Advice> advice = indexAdvisor.advise();
+
+        //idx_member_age 가 이미 있으므로 같은 이름의 DDL 을 내지 않는다
+        assertThat(advice).extracting("shape").containsExactly("ageGoe,ageLoe");
+        assertThat(advice.get(0).getSuggestions()).noneMatch(suggestion -> suggestion.startsWith("create index"));
+    }
+
+    @Test
+    void coveredScanIsReportedAndCollidingNameIsRenamed() {
+        List<String> fields = List.of("username", "ageGoe");
+
+        IndexAdvisor.Advice covered = new IndexAdvisor.Advice("username,ageGoe", 1);
+        IndexAdvisor.suggest(covered, fields, "MEMBER.TABLESCAN",
+                Map.of("member", Map.of("idx_member_username", List.of("username", "age", "team_id"))));
+        assertThat(covered.getSuggestions()).singleElement().asString()
+                .startsWith("idx_member_username already covers member (username, age)");
+
+        IndexAdvisor.Advice colliding = new IndexAdvisor.Advice("username,ageGoe", 1);
+        IndexAdvisor.suggest(colliding, fields, "MEMBER.TABLESCAN",
+                Map.of("member", Map.of("idx_member_username_age", List.of("team_id"))));
+        assertThat(colliding.getSuggestions())
+                .containsExactly("create index idx_member_username_age_2 on member (username, age)");
+    }
+}
@@ -0,0 +1,58 @@
+package hello.querydsl.monitor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NPlusOneDetectorTest {
+    static final String LOAD_TEAM = "select team0_.team_id as team_id1_1_0_, team0_.name as name2_1_0_ from team team0_ where team0_.team_id=?";
+
+    @Test
+    void onlyEntityLoadsAreCounted() {
+        assertThat(NPlusOneDetector.isLoad(LOAD_TEAM)).isTrue();
+        assertThat(NPlusOneDetector.isLoad("insert into member (age, team_id, username, member_id) values (?, ?, ?, ?)")).isFalse();
+        assertThat(NPlusOneDetector.isLoad("call next value for member_seq")).isFalse();
+        assertThat(NPlusOneDetector.isLoad("select member0_.member_id as col_0_0_ from member member0_ where member0_.member_id in (? , ?)")).isFalse();
+        assertThat(NPlusOneDetector.isLoad("select member0_.member_id as col_0_0_ from member member0_ where member0_.member_id>? order by member0_.member_id asc limit ?")).isFalse();
+    }
+
+    @Test
+    void batchedInsertsAreNotReported() {
+        NPlusOneDetector detector = new NPlusOneDetector(properties(SqlMonitorProperties.Mode.FAIL));
+
+        try (SqlScope scope = SqlCounter.open("batch", detector)) {
+            for (int i = 0; i < 10; i++) {
+                SqlCounter.onStatement("call next value for member_seq");
+                SqlCounter.onStatement("insert into member (age, team_id, username, member_id) values (?, ?, ?, ?)");
+            }
+
+            assertThat(scope.getStatementCount()).isEqualTo(20);
+            assertThat(scope.getRepeatedStatements(3)).isEmpty();
+            detector.check(scope);
+        }
+    }
+
+    @Test
+    void failModeThrowsOnTheRepeatedStatement() {
+        NPlusOneDetector detector = new NPlusOneDetector(properties(SqlMonitorProperties.Mode.FAIL));
+
+        try (SqlScope scope = SqlCounter.open("lazy", detector)) {
+            SqlCounter.onStatement(LOAD_TEAM);
+            SqlCounter.onStatement(LOAD_TEAM);
+
+            //threshold 번째 select 에서 바로 실패한다 (트랜잭션 커밋 전)
+            assertThatThrownBy(() -> SqlCounter.onStatement(LOAD_TEAM))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("N+1 suspected in lazy");
+            assertThat(scope.getRepeatedStatements(3)).containsEntry(LOAD_TEAM, 3);
+        }
+    }
+
+    private static SqlMonitorProperties properties(SqlMonitorProperties.Mode mode) {
+        SqlMonitorProperties properties = new SqlMonitorProperties();
+        properties.setRepeatThreshold(3);
+        properties.setMode(mode);
+        return properties;
+    }
+}
@@ -0,0 +1,46 @@
+package hello.querydsl.monitor;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RepositoryMonitorAspectTest {
+
+    @Test
+    void nPlusOneFailureIsRecordedAsError() {
+        SqlMonitorProperties properties = new SqlMonitorProperties();
+        properties.setRepeatThreshold(3);
+        properties.setMode(SqlMonitorProperties.Mode.FAIL);
+        RepositoryMetrics metrics = new RepositoryMetrics();
+        AspectJProxyFactory factory = new AspectJProxyFactory(new LazyRepository());
+        factory.addAspect(new RepositoryMonitorAspect(new NPlusOneDetector(properties), metrics, new IndexAdvisor(null)));
+        LazyRepository repository = factory.getProxy();
+
+        //statement 단계의 예외를 삼켜도 호출이 끝날 때 check 에서 실패한다
+        assertThatThrownBy(repository::findAll)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("N+1 suspected");
+
+        RepositoryMetrics.Snapshot snapshot = metrics.snapshot().get("LazyRepository.findAll");
+        assertThat(snapshot.getCalls()).isEqualTo(1);
+        assertThat(snapshot.getErrors()).isEqualTo(1);
+    }
+
+    @Repository
+    static class LazyRepository {
+        public List<String> findAll() {
+            for (int i = 0; i < 3; i++) {
+                try {
+                    SqlCounter.onStatement(NPlusOneDetectorTest.LOAD_TEAM);
+                } catch (IllegalStateException ignored) {
+                }
+            }
+            return List.of("a", "b", "c");
+        }
+    }
+}
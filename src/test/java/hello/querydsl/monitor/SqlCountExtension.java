@@ -0,0 +1,53 @@
+package hello.querydsl.monitor;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 테스트 메서드 하나 동안 실행된 SQL 을 집계한다.
+ * <pre>
+ * &#64;RegisterExtension
+ * SqlCountExtension sql = new SqlCountExtension();
+ *
+ * sql.reset();
+ * memberRepository.search(condition);
+ * sql.assertStatementsAtMost(1);
+ * </pre>
+ */
+public class SqlCountExtension implements BeforeEachCallback, AfterEachCallback {
+    private SqlScope scope;
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        scope = SqlCounter.open("test " + context.getDisplayName());
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        scope.close();
+    }
+
+    //given 절의 insert 등을 빼고 측정할 때 호출
+    public void reset() {
+        scope.reset();
+    }
+
+    public SqlScope getScope() {
+        return scope;
+    }
+
+    public void assertStatementsAtMost(int max) {
+        assertThat(scope.getStatementCount())
+                .as("SQL statements in %s", scope)
+                .isLessThanOrEqualTo(max);
+    }
+
+    public void assertNoRepeatedStatements(int threshold) {
+        assertThat(scope.getRepeatedStatements(threshold))
+                .as("statements repeated %d+ times in %s", threshold, scope)
+                .isEmpty();
+    }
+}
@@ -0,0 +1,43 @@
+package hello.querydsl.monitor;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//테스트 설정은 querydsl.sql-monitor.enabled=true
+@SpringBootTest
+class SqlCountingDataSourceTest {
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void countsRowsReadThroughWrappedStatements() throws Exception {
+        assertThat(dataSource).isInstanceOf(SqlCountingDataSource.class);
+
+        try (SqlScope scope = SqlCounter.open("rows")) {
+            assertThat(jdbcTemplate.queryForList("select x from system_range(1, 3)", Long.class)).hasSize(3);
+            assertThat(scope.getRowCount()).isEqualTo(3);
+
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement("select x from system_range(1, 2)");
+                 ResultSet resultSet = statement.executeQuery()) {
+                assertThat(resultSet.getStatement()).isSameAs(statement);
+                assertThat(statement.getConnection()).isSameAs(connection);
+                while (resultSet.next()) {
+                    resultSet.getLong(1);
+                }
+            }
+            assertThat(scope.getRowCount()).isEqualTo(5);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.QMember;
+import hello.querydsl.entity.QTeam;
+import hello.querydsl.entity.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    비동기 조회는 다른 스레드의 트랜잭션에서 실행되므로 테스트 데이터는 커밋하고, 끝나면 지운다.
+ */
+@SpringBootTest
+class MemberAsyncRepositoryTest {
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    MemberAsyncRepository memberAsyncRepository;
+    @Autowired
+    MemberSearchResultCache resultCache;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("asyncTeam");
+            em.persist(team);
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Member("async" + i, 20 + i, team));
+            }
+        });
+        resultCache.invalidateAll();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        //벌크 연산은 executeBulk 를 거쳐야 메모리 캐시 / 인덱스 / 복제본 / 통계가 변경을 안다
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QMember.member)
+                .where(QMember.member.username.like("async%")));
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QTeam.team)
+                .where(QTeam.team.name.eq("asyncTeam")));
+    }
+
+    @Test
+    void searchPageAsync() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("asyncTeam");
+
+        CompletableFuture<Page<MemberTeamDto>> future = memberAsyncRepository.searchPageAsync(condition, PageRequest.of(0, 3));
+
+        Page<MemberTeamDto> result = future.get(5, TimeUnit.SECONDS);
+        assertThat(result.getTotalElements()).isEqualTo(5);
+        assertThat(result.getContent()).hasSize(3);
+        assertThat(result.getContent()).extracting("teamName").containsOnly("asyncTeam");
+    }
+}
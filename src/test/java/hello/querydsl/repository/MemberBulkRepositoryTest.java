@@ -0,0 +1,72 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.BulkOperationResult;
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.Team;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static hello.querydsl.entity.QMember.member;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+@SpringBootTest
+class MemberBulkRepositoryTest {
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    @Test
+    void bulkUpdateInChunks() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member[] members = new Member[5];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = new Member("member" + i, 10 + i, teamA);
+            em.persist(members[i]);
+        }
+        Member other = new Member("other", 10, teamB);
+        em.persist(other);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        BulkOperationResult result = memberBulkRepository.bulkUpdate(condition, 2,
+                update -> update.set(member.age, member.age.add(1)));
+
+        assertThat(result.getChunks()).isEqualTo(3);
+        assertThat(result.getAffectedRows()).isEqualTo(5);
+
+        //대상만 영속성 컨텍스트에서 빠지므로 다시 조회하면 바뀐 값이 보인다
+        assertThat(em.contains(members[0])).isFalse();
+        assertThat(em.contains(other)).isTrue();
+        assertThat(em.find(Member.class, members[0].getId()).getAge()).isEqualTo(11);
+    }
+
+    @Test
+    void bulkDeleteInChunks() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, 10 + i, teamA));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeLoe(12);
+
+        BulkOperationResult result = memberBulkRepository.bulkDelete(condition, 10);
+
+        assertThat(result.getChunks()).isEqualTo(1);
+        assertThat(result.getAffectedRows()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,147 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.QMember;
+import hello.querydsl.entity.QTeam;
+import hello.querydsl.entity.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/*
+    엔티티 변경은 커밋되자마자 복제본에 반영되고, 벌크 연산 뒤에는 백그라운드에서 다시 만들어지므로 최신이 될 때까지 기다린다.
+ */
+@SpringBootTest(properties = "querydsl.column-store.enabled=true")
+class MemberColumnStoreTest {
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    MemberColumnStore memberColumnStore;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("columnA");
+            Team teamB = new Team("columnB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("column" + i, 10 + i, i % 2 == 0 ? teamA : teamB));
+            }
+            em.persist(new Member("columnNoTeam", 15, null));
+        });
+        awaitFresh();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        //벌크 연산은 executeBulk 를 거쳐야 메모리 캐시 / 인덱스 / 복제본 / 통계가 변경을 안다
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QMember.member)
+                .where(QMember.member.username.like("column%")));
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QTeam.team)
+                .where(QTeam.team.name.like("column%")));
+    }
+
+    @Test
+    void searchMatchesDatabase() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("columnA");
+        condition.setAgeGoe(12);
+        condition.setAgeLoe(16);
+
+        Optional<List<MemberTeamDto>> fromColumns = memberColumnStore.search(condition);
+
+        assertThat(fromColumns).isPresent();
+        assertThat(fromColumns.get()).extracting("username").containsExactly("column2", "column4", "column6");
+        assertThat(fromColumns.get()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(memberJpaRepository.searchByBuilder(condition));
+
+        MemberSearchCondition byUsername = new MemberSearchCondition();
+        byUsername.setUsername("columnNoTeam");
+        assertThat(memberColumnStore.search(byUsername).orElseThrow())
+                .extracting("teamId", "teamName").containsExactly(tuple(null, null));
+    }
+
+    @Test
+    void committedEntityChangesAreAppliedWithoutRebuild() {
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("columnNew", 50, null));
+            Member member = em.createQuery("select m from Member m where m.username = 'column1'", Member.class)
+                    .getSingleResult();
+            member.setAge(60);
+            member.changeTeam(em.createQuery("select t from Team t where t.name = 'columnA'", Team.class)
+                    .getSingleResult());
+            em.remove(em.createQuery("select m from Member m where m.username = 'column2'", Member.class)
+                    .getSingleResult());
+        });
+
+        //다시 만들지 않고 커밋 직후 바로 최신이다
+        assertThat(memberColumnStore.isFresh()).isTrue();
+        MemberSearchCondition byUsername = new MemberSearchCondition();
+        byUsername.setUsername("columnNew");
+        assertThat(memberColumnStore.search(byUsername).orElseThrow()).hasSize(1);
+
+        MemberSearchCondition teamA = new MemberSearchCondition();
+        teamA.setTeamName("columnA");
+        List<MemberTeamDto> fromColumns = memberColumnStore.search(teamA).orElseThrow();
+        assertThat(fromColumns).extracting("username")
+                .containsExactly("column0", "column1", "column4", "column6", "column8");
+        assertThat(fromColumns).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(memberJpaRepository.searchByBuilder(teamA));
+    }
+
+    @Test
+    void teamRenameIsApplied() {
+        tx.executeWithoutResult(status -> em.createQuery("select t from Team t where t.name = 'columnB'", Team.class)
+                .getSingleResult()
+                .setName("columnRenamed"));
+
+        MemberSearchCondition renamed = new MemberSearchCondition();
+        renamed.setTeamName("columnRenamed");
+        assertThat(memberColumnStore.isFresh()).isTrue();
+        assertThat(memberColumnStore.search(renamed).orElseThrow()).extracting("username")
+                .containsExactly("column1", "column3", "column5", "column7", "column9");
+    }
+
+    @Test
+    void executeBulkMarksSnapshotStale() throws InterruptedException {
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QMember.member)
+                .where(QMember.member.username.eq("column0")));
+        awaitFresh();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("column0");
+        assertThat(memberColumnStore.search(condition).orElseThrow()).isEmpty();
+    }
+
+    private void awaitFresh() throws InterruptedException {
+        for (int i = 0; i < 100 && !memberColumnStore.isFresh(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(memberColumnStore.isFresh()).isTrue();
+    }
+}
@@ -3,8 +3,10 @@ package hello.querydsl.repository;
 import hello.querydsl.dto.MemberSearchCondition;
 import hello.querydsl.dto.MemberTeamDto;
 import hello.querydsl.entity.Member;
+import hello.querydsl.entity.QMember;
 import hello.querydsl.entity.Team;
 import org.assertj.core.api.Assertions;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -13,6 +15,7 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
@@ -107,4 +110,62 @@ class MemberJpaRepositoryTest {
             System.out.println("memberTeamDto = " + memberTeamDto);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void forEachSearchTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member" + i, i, i % 2 == 0 ? teamA : teamB));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        List<MemberTeamDto> result = new ArrayList<>();
+        long count = memberJpaRepository.forEachSearch(condition, result::add);
+
+        assertThat(count).isEqualTo(5);
+        assertThat(result).extracting("username")
+                .containsExactly("member0", "member2", "member4", "member6", "member8");
+    }
+
+    @Test
+    void readOnlyListIsNotDirtyChecked() {
+        for (int i = 0; i < 3; i++) {
+            em.persist(new Member("readOnly" + i, i, null));
+        }
+        em.flush();
+        em.clear();
+
+        List<Member> members = memberJpaRepository.findAll_querydsl();
+        Session session = em.unwrap(Session.class);
+        assertThat(members).allMatch(session::isReadOnly);
+
+        //읽기 전용 엔티티는 수정해도 flush 되지 않는다
+        members.forEach(m -> m.setUsername("changed"));
+        em.flush();
+        em.clear();
+
+        assertThat(memberJpaRepository.findByUsername("changed")).isEmpty();
+    }
+
+    @Test
+    void executeBulkFlushesPendingChangesFirst() {
+        Member member = new Member("bulkFlush", 10, null);
+        em.persist(member);
+        em.flush();
+        member.setAge(77);
+
+        //flush 되지 않은 나이 변경도 벌크 연산의 조건에 보인다
+        long count = memberJpaRepository.executeBulk(query -> query
+                .update(QMember.member)
+                .set(QMember.member.username, "bulkFlushed")
+                .where(QMember.member.age.eq(77)));
+
+        assertThat(count).isEqualTo(1);
+        assertThat(memberJpaRepository.findByUsername("bulkFlushed")).extracting("age").containsExactly(77);
+    }
+}
@@ -0,0 +1,106 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.QMember;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    이름 인덱스는 커밋된 변경만 반영하므로 트랜잭션을 직접 나눠서 검증하고, 끝나면 데이터를 지운다.
+ */
+@SpringBootTest
+class MemberNameIndexTest {
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    MemberNameIndex memberNameIndex;
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        assertThat(memberNameIndex.isWarmedUp()).isTrue();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QMember.member)
+                .where(QMember.member.username.like("suggest%").or(QMember.member.username.like("renamed%"))));
+        //백그라운드 재적재를 기다리지 않고 다음 테스트를 시작하도록 바로 다시 읽는다
+        memberNameIndex.reload();
+    }
+
+    @Test
+    void committedChangesAreIndexed() {
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("suggestA", 10, null));
+            em.persist(new Member("suggestB", 20, null));
+        });
+        //롤백된 insert 는 반영되지 않는다
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("suggestC", 30, null));
+            status.setRollbackOnly();
+        });
+
+        assertThat(memberNameIndex.suggest("suggest", 10)).extracting("username")
+                .containsExactly("suggestA", "suggestB");
+
+        tx.executeWithoutResult(status -> {
+            Member member = em.createQuery("select m from Member m where m.username = 'suggestA'", Member.class)
+                    .getSingleResult();
+            member.setUsername("renamedA");
+        });
+
+        assertThat(memberNameIndex.suggest("suggest", 10)).extracting("username").containsExactly("suggestB");
+        assertThat(memberNameIndex.suggest("renamed", 10)).extracting("username").containsExactly("renamedA");
+    }
+
+    @Test
+    void bulkDeleteRemovesFromIndex() {
+        tx.executeWithoutResult(status -> em.persist(new Member("suggestBulk", 10, null)));
+        assertThat(memberNameIndex.suggest("suggestBulk", 10)).hasSize(1);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("suggestBulk");
+        memberBulkRepository.bulkDelete(condition, 100);
+
+        assertThat(memberNameIndex.suggest("suggestBulk", 10)).isEmpty();
+    }
+
+    @Test
+    void executeBulkReloadsInBackground() throws InterruptedException {
+        tx.executeWithoutResult(status -> em.persist(new Member("suggestReload", 10, null)));
+
+        memberJpaRepository.executeBulk(query -> query
+                .update(QMember.member)
+                .set(QMember.member.username, "renamedReload")
+                .where(QMember.member.username.eq("suggestReload")));
+
+        //재적재는 커밋한 스레드가 아니라 백그라운드에서 끝난다
+        long deadline = System.currentTimeMillis() + 5000;
+        while (memberNameIndex.suggest("renamedReload", 10).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(memberNameIndex.suggest("renamedReload", 10)).hasSize(1);
+        assertThat(memberNameIndex.suggest("suggestReload", 10)).isEmpty();
+    }
+}
@@ -1,13 +1,19 @@
 package hello.querydsl.repository;
 
+import com.querydsl.jpa.impl.JPAQueryFactory;
 import hello.querydsl.dto.MemberSearchCondition;
 import hello.querydsl.dto.MemberTeamDto;
 import hello.querydsl.entity.Member;
 import hello.querydsl.entity.QMember;
 import hello.querydsl.entity.Team;
+import hello.querydsl.monitor.SqlCountExtension;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
@@ -21,8 +27,12 @@ import static org.junit.jupiter.api.Assertions.*;
 @SpringBootTest
 class MemberRepositoryTest {
     @Autowired MemberRepository memberRepository;
+    @Autowired MemberSearchQueryCache searchQueryCache;
+    @Autowired MemberSearchResultCache resultCache;
     @PersistenceContext
     EntityManager em;
+    @RegisterExtension
+    SqlCountExtension sql = new SqlCountExtension();
 
     @Test
     void basicTest() {
@@ -63,6 +73,131 @@ class MemberRepositoryTest {
         }
     }
 
+    @Test
+    void searchSliceTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, 10 + i, teamA));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        Slice<MemberTeamDto> first = memberRepository.searchSlice(condition, null, 3);
+        assertThat(first.getContent()).extracting("username").containsExactly("member0", "member1", "member2");
+        assertThat(first.hasNext()).isTrue();
+
+        Long lastMemberId = first.getContent().get(2).getMemberId();
+        sql.reset();
+        Slice<MemberTeamDto> second = memberRepository.searchSlice(condition, lastMemberId, 3);
+        //seek 방식은 count 쿼리 없이 한 번만 조회
+        sql.assertStatementsAtMost(1);
+        assertThat(second.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    void countPlanTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, 10 + i, teamA));
+        }
+        em.persist(new Member("noTeam", 20, null));
+
+        MemberCountPlanner countPlanner = new MemberCountPlanner(new JPAQueryFactory(em));
+
+        MemberSearchCondition ageCondition = new MemberSearchCondition();
+        ageCondition.setAgeGoe(12);
+        MemberCountPlanner.CountPlan agePlan = countPlanner.plan(ageCondition);
+        assertThat(agePlan.getPlanned()).isEqualTo(MemberCountPlanner.Optimization.TEAM_JOIN_ELIMINATED);
+        assertThat(agePlan.fetchCount()).isEqualTo(4);
+
+        MemberSearchCondition teamCondition = new MemberSearchCondition();
+        teamCondition.setTeamName("teamA");
+        MemberCountPlanner.CountPlan teamPlan = countPlanner.plan(teamCondition);
+        assertThat(teamPlan.getPlanned()).isEqualTo(MemberCountPlanner.Optimization.TEAM_JOIN_KEPT);
+        assertThat(teamPlan.fetchCount()).isEqualTo(5);
+
+        //첫 페이지 content 가 pageSize 보다 작으면 count 쿼리를 실행하지 않는다
+        MemberCountPlanner.CountPlan skippedPlan = countPlanner.plan(teamCondition);
+        Page<String> page = countPlanner.page(List.of("a", "b"), PageRequest.of(0, 10), skippedPlan);
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(skippedPlan.getApplied()).isEqualTo(MemberCountPlanner.Optimization.COUNT_SKIPPED);
+
+        Page<MemberTeamDto> result = memberRepository.searchPageComplex(teamCondition, PageRequest.of(0, 3));
+        assertThat(result.getContent()).hasSize(3);
+        assertThat(result.getTotalElements()).isEqualTo(5);
+    }
+
+    @Test
+    void searchQueryCacheTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(15);
+        memberRepository.search(condition);
+
+        long hits = searchQueryCache.getHitCount();
+        condition.setAgeGoe(5);
+        List<MemberTeamDto> result = memberRepository.search(condition);
+
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        assertThat(searchQueryCache.getHitCount()).isEqualTo(hits + 1);
+        assertThat(MemberSearchQueryCache.shapeOf(condition))
+                .isEqualTo(MemberSearchQueryCache.TEAM_NAME | MemberSearchQueryCache.AGE_GOE);
+    }
+
+    @Test
+    void searchResultCacheIsBypassedInReadWriteTransaction() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamB));
+
+        MemberSearchCondition teamACondition = new MemberSearchCondition();
+        teamACondition.setTeamName("teamA");
+
+        //커밋되지 않은 데이터를 다른 요청에 보여주지 않도록 쓰기 트랜잭션 안에서는 캐시를 쓰지 않는다
+        MemberSearchResultCache.Stats before = resultCache.getStats();
+        memberRepository.search(teamACondition);
+        memberRepository.search(teamACondition);
+        assertThat(resultCache.getStats().getHitCount()).isEqualTo(before.getHitCount());
+        assertThat(resultCache.getStats().getMissCount()).isEqualTo(before.getMissCount());
+
+        member1.changeTeam(teamB);
+        em.flush();
+        assertThat(memberRepository.search(teamACondition)).isEmpty();
+    }
+
+    @Test
+    void lazyTeamNavigationRepeatsSameStatement() {
+        for (int i = 0; i < 3; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            em.persist(new Member("member" + i, 10, team));
+        }
+        em.flush();
+        em.clear();
+
+        sql.reset();
+        for (Member member : memberRepository.findAll()) {
+            member.getTeam().getName();
+        }
+
+        //회원 조회 1 + 팀마다 같은 select 1 번씩 (N+1)
+        assertThat(sql.getScope().getStatementCount()).isEqualTo(4);
+        assertThat(sql.getScope().getRepeatedStatements(3)).hasSize(1);
+    }
+
     @Test
     void querydslPredicateExecutorTest() {
         QMember member = QMember.member;
@@ -0,0 +1,165 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.QMember;
+import hello.querydsl.entity.QTeam;
+import hello.querydsl.entity.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    캐시는 커밋된 데이터만 담으므로 트랜잭션을 직접 나눠서 검증하고, 끝나면 데이터를 지운다.
+ */
+@SpringBootTest
+class MemberSearchResultCacheTest {
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+    @Autowired
+    MemberSearchResultCache resultCache;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    MemberSearchCondition teamACondition = new MemberSearchCondition();
+    MemberSearchCondition teamBCondition = new MemberSearchCondition();
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("cacheA");
+            Team teamB = new Team("cacheB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("cache1", 10, teamA));
+            em.persist(new Member("cache2", 20, teamB));
+        });
+        resultCache.invalidateAll();
+        teamACondition.setTeamName("cacheA");
+        teamBCondition.setTeamName("cacheB");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        //벌크 연산은 executeBulk 를 거쳐야 메모리 캐시 / 인덱스 / 복제본 / 통계가 변경을 안다
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QMember.member)
+                .where(QMember.member.username.like("cache%")));
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QTeam.team)
+                .where(QTeam.team.name.like("cache%")));
+    }
+
+    @Test
+    void committedWritesInvalidateAffectedTeams() {
+        memberRepository.search(teamACondition);
+        memberRepository.search(teamBCondition);
+        long hits = resultCache.getStats().getHitCount();
+        memberRepository.search(teamBCondition);
+        assertThat(resultCache.getStats().getHitCount()).isEqualTo(hits + 1);
+
+        //cacheB 로 옮기면 이전 팀(cacheA)과 새 팀(cacheB)의 결과가 무효화된다
+        tx.executeWithoutResult(status -> {
+            Member member = em.createQuery("select m from Member m where m.username = 'cache1'", Member.class)
+                    .getSingleResult();
+            member.changeTeam(em.createQuery("select t from Team t where t.name = 'cacheB'", Team.class)
+                    .getSingleResult());
+        });
+
+        assertThat(memberRepository.search(teamACondition)).isEmpty();
+        assertThat(memberRepository.search(teamBCondition)).extracting("username")
+                .containsExactlyInAnyOrder("cache1", "cache2");
+
+        //벌크 연산은 전체 무효화
+        memberJpaRepository.executeBulk(query -> query
+                .update(QMember.member)
+                .set(QMember.member.username, "cacheRenamed")
+                .where(QMember.member.username.eq("cache2")));
+
+        assertThat(memberRepository.search(teamBCondition)).extracting("username")
+                .containsExactlyInAnyOrder("cache1", "cacheRenamed");
+    }
+
+    @Test
+    void renamingTeamInvalidatesOldAndNewNames() {
+        MemberSearchCondition all = new MemberSearchCondition();
+        MemberSearchCondition renamedCondition = new MemberSearchCondition();
+        renamedCondition.setTeamName("cacheC");
+        memberRepository.search(teamACondition);
+        memberRepository.search(renamedCondition);
+        memberRepository.search(all);
+
+        tx.executeWithoutResult(status -> em.createQuery("select t from Team t where t.name = 'cacheA'", Team.class)
+                .getSingleResult()
+                .setName("cacheC"));
+
+        //이전 이름, 새 이름, 팀 조건 없는 결과 모두 바뀐 팀 이름으로 다시 조회된다
+        assertThat(memberRepository.search(teamACondition)).isEmpty();
+        assertThat(memberRepository.search(renamedCondition)).extracting("username").containsExactly("cache1");
+        assertThat(memberRepository.search(all)).filteredOn("username", "cache1")
+                .extracting("teamName").containsExactly("cacheC");
+    }
+
+    @Test
+    void bulkUpdateMovingTeamInvalidatesTargetTeam() {
+        memberRepository.search(teamBCondition);
+        Team teamB = tx.execute(status -> em.createQuery("select t from Team t where t.name = 'cacheB'", Team.class)
+                .getSingleResult());
+
+        //setter 로 팀을 옮기면 옮겨 간 팀(cacheB)의 결과도 무효화된다
+        memberBulkRepository.bulkUpdate(teamACondition, 10, update -> update.set(QMember.member.team, teamB));
+
+        assertThat(memberRepository.search(teamACondition)).isEmpty();
+        assertThat(memberRepository.search(teamBCondition)).extracting("username")
+                .containsExactlyInAnyOrder("cache1", "cache2");
+    }
+
+    @Test
+    void resultLoadedDuringInvalidationIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        //조회 도중에 무효화되면 그 결과는 넣지 않는다
+        resultCache.get("test", teamACondition, Pageable.unpaged(), () -> {
+            loads.incrementAndGet();
+            resultCache.invalidateTeam("cacheA");
+            return List.of();
+        });
+        resultCache.get("test", teamACondition, Pageable.unpaged(), () -> {
+            loads.incrementAndGet();
+            return List.of();
+        });
+        assertThat(loads).hasValue(2);
+
+        //다른 팀의 무효화는 영향이 없다
+        resultCache.get("other", teamACondition, Pageable.unpaged(), () -> {
+            loads.incrementAndGet();
+            resultCache.invalidateTeam("cacheB");
+            return List.of();
+        });
+        resultCache.get("other", teamACondition, Pageable.unpaged(), () -> {
+            loads.incrementAndGet();
+            return List.of();
+        });
+        assertThat(loads).hasValue(3);
+    }
+}
@@ -0,0 +1,60 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.controller.MemberBulkImporter;
+import hello.querydsl.controller.MemberDataLoader;
+import hello.querydsl.dto.BulkImportResult;
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    샤드 모드에서 샘플 적재와 대량 등록이 샤드에 저장되는지 확인한다. (MemberShardRepositoryTest 와 다른 메모리 DB)
+ */
+@SpringBootTest(properties = {
+        "querydsl.sharding.enabled=true",
+        "querydsl.sharding.urls=jdbc:h2:mem:shard-load-test-0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard-load-test-1;DB_CLOSE_DELAY=-1",
+        "querydsl.sharding.ddl-auto=create"
+})
+class MemberShardLoadTest {
+    @Autowired
+    MemberShardRepository memberShardRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberDataLoader memberDataLoader;
+    @Autowired
+    MemberBulkImporter memberBulkImporter;
+
+    @Test
+    void loaderAndImporterWriteToShards() throws IOException {
+        memberDataLoader.load(2, 3, 0);
+
+        String body = "{\"username\":\"shardImport1\",\"age\":10,\"teamName\":\"teamA\"}\n"
+                + "{\"username\":\"shardImport2\",\"age\":20,\"teamName\":\"shardNewTeam\"}\n";
+        BulkImportResult result = memberBulkImporter.importMembers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        assertThat(result.getInsertedRows()).isEqualTo(2);
+
+        List<MemberTeamDto> all = memberShardRepository.search(new MemberSearchCondition());
+        assertThat(all).hasSize(8);
+        //샤드 모드에서는 MemberJpaRepository.search 도 샤드를 조회한다
+        assertThat(memberJpaRepository.search(new MemberSearchCondition())).isEqualTo(all);
+
+        MemberSearchCondition byUsername = new MemberSearchCondition();
+        byUsername.setUsername("shardImport1");
+        assertThat(memberShardRepository.search(byUsername)).extracting("teamName").containsExactly("teamA");
+
+        MemberSearchCondition byNewTeam = new MemberSearchCondition();
+        byNewTeam.setTeamName("shardNewTeam");
+        assertThat(memberShardRepository.shardsFor(byNewTeam)).hasSize(1);
+        assertThat(memberShardRepository.search(byNewTeam)).extracting("username").containsExactly("shardImport2");
+    }
+}
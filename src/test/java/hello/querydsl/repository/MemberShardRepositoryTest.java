@@ -0,0 +1,89 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    메모리 H2 샤드 3개. 데이터는 클래스마다 한 번 넣고 조회만 검증한다.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@SpringBootTest(properties = {
+        "querydsl.sharding.enabled=true",
+        "querydsl.sharding.urls=jdbc:h2:mem:shard-test-0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard-test-1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard-test-2;DB_CLOSE_DELAY=-1",
+        "querydsl.sharding.ddl-auto=create"
+})
+class MemberShardRepositoryTest {
+    @Autowired
+    MemberShardRepository memberShardRepository;
+    @Autowired
+    MemberRepository memberRepository;
+
+    List<Long> memberIds = new ArrayList<>();
+
+    @BeforeAll
+    void setUp() {
+        List<Long> teamIds = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            teamIds.add(memberShardRepository.saveTeam("shardTeam" + t));
+        }
+        for (int i = 0; i < 20; i++) {
+            memberIds.add(memberShardRepository.saveMember("shard" + i, i, teamIds.get(i % 4)));
+        }
+        memberIds.add(memberShardRepository.saveMember("noTeam", 50, null));
+    }
+
+    @Test
+    void searchMergesAllShardsInIdOrder() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        List<MemberTeamDto> result = memberShardRepository.search(condition);
+
+        assertThat(memberShardRepository.shardsFor(condition)).containsExactly(0, 1, 2);
+        assertThat(result).extracting("memberId").containsExactlyElementsOf(memberIds);
+        assertThat(result).isSortedAccordingTo(Comparator.comparing(MemberTeamDto::getMemberId));
+        //샤드 모드에서는 MemberRepository.search 도 샤드를 조회한다
+        assertThat(memberRepository.search(condition)).isEqualTo(result);
+    }
+
+    @Test
+    void teamNameIsRoutedToOwningShard() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("shardTeam1");
+        condition.setAgeGoe(5);
+
+        assertThat(memberShardRepository.shardsFor(condition)).hasSize(1);
+        assertThat(memberShardRepository.search(condition)).extracting("username")
+                .containsExactly("shard5", "shard9", "shard13", "shard17");
+
+        condition.setTeamName("unknown");
+        assertThat(memberShardRepository.shardsFor(condition)).isEmpty();
+        assertThat(memberShardRepository.search(condition)).isEmpty();
+    }
+
+    @Test
+    void searchPageComplexMergesPagesAndSumsCounts() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeLoe(19);
+
+        Page<MemberTeamDto> first = memberRepository.searchPageComplex(condition, PageRequest.of(0, 6));
+        Page<MemberTeamDto> last = memberRepository.searchPageComplex(condition, PageRequest.of(3, 6));
+
+        assertThat(first.getContent()).extracting("memberId").containsExactlyElementsOf(memberIds.subList(0, 6));
+        assertThat(first.getTotalElements()).isEqualTo(20);
+        assertThat(last.getContent()).extracting("memberId").containsExactlyElementsOf(memberIds.subList(18, 20));
+        assertThat(last.getTotalElements()).isEqualTo(20);
+    }
+}
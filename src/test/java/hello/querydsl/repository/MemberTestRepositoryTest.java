@@ -0,0 +1,122 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.Team;
+import hello.querydsl.monitor.SqlCountExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+@SpringBootTest
+class MemberTestRepositoryTest {
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @RegisterExtension
+    SqlCountExtension sql = new SqlCountExtension();
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+
+    @BeforeEach
+    void setUp() {
+        Team teamA = new Team("sliceA");
+        Team teamB = new Team("sliceB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("slice" + i, 10 + i, teamA));
+        }
+        em.persist(new Member("other", 99, teamB));
+        em.flush();
+        em.clear();
+        condition.setTeamName("sliceA");
+    }
+
+    @Test
+    void applySliceRunsNoCountQuery() {
+        sql.reset();
+        Slice<Member> first = memberTestRepository.searchSliceByApplySlice(condition,
+                PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "age")));
+        sql.assertStatementsAtMost(1);
+        assertThat(first.getContent()).extracting("username").containsExactly("slice4", "slice3", "slice2");
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<Member> last = memberTestRepository.searchSliceByApplySlice(condition,
+                PageRequest.of(1, 3, Sort.by(Sort.Direction.DESC, "age")));
+        assertThat(last.getContent()).extracting("username").containsExactly("slice1", "slice0");
+        assertThat(last.hasNext()).isFalse();
+    }
+
+    @Test
+    void applyKeysetContinuesAfterLastKey() {
+        Slice<Member> first = memberTestRepository.searchSliceByKeyset(condition, null, 2);
+        assertThat(first.getContent()).extracting("username").containsExactly("slice0", "slice1");
+        assertThat(first.hasNext()).isTrue();
+
+        List<String> rest = new ArrayList<>();
+        Long lastMemberId = first.getContent().get(1).getId();
+        Slice<Member> next;
+        do {
+            sql.reset();
+            next = memberTestRepository.searchSliceByKeyset(condition, lastMemberId, 2);
+            sql.assertStatementsAtMost(1);
+            next.getContent().forEach(member -> rest.add(member.getUsername()));
+            lastMemberId = next.getContent().get(next.getNumberOfElements() - 1).getId();
+        } while (next.hasNext());
+
+        assertThat(rest).containsExactly("slice2", "slice3", "slice4");
+    }
+
+    @Test
+    void forEachChunkClearsBetweenChunks() {
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+        List<Member> firstChunk = new ArrayList<>();
+
+        sql.reset();
+        long count = memberTestRepository.searchInChunks(condition, 2, chunk -> {
+            if (firstChunk.isEmpty()) {
+                firstChunk.addAll(chunk);
+            }
+            chunkSizes.add(chunk.size());
+            chunk.forEach(member -> usernames.add(member.getUsername()));
+        });
+
+        //한 번의 쿼리를 커서로 끝까지 읽는다
+        sql.assertStatementsAtMost(1);
+        assertThat(count).isEqualTo(5);
+        assertThat(chunkSizes).containsExactly(2, 2, 1);
+        assertThat(usernames).containsExactly("slice0", "slice1", "slice2", "slice3", "slice4");
+        //앞 chunk 의 엔티티는 영속성 컨텍스트에 남지 않는다
+        assertThat(firstChunk).noneMatch(em::contains);
+    }
+
+    @Test
+    void applyPaginationDerivesCountWithoutFetchJoin() {
+        sql.reset();
+        Page<Member> page = memberTestRepository.searchPageWithTeam(condition, PageRequest.of(0, 2));
+
+        //content + 자동으로 만든 count
+        sql.assertStatementsAtMost(2);
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.getTotalElements()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,185 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.MemberSearchCondition;
+import hello.querydsl.dto.MemberTeamDto;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.QMember;
+import hello.querydsl.entity.QTeam;
+import hello.querydsl.entity.Team;
+import hello.querydsl.repository.support.ParallelCountExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/*
+    count 는 별도 EntityManager(트랜잭션 밖)에서 실행되므로 테스트 데이터는 커밋하고, 끝나면 지운다.
+ */
+@SpringBootTest
+class ParallelPagingTest {
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberTestRepository memberTestRepository;
+    @Autowired
+    ParallelCountExecutor parallelCountExecutor;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    MemberSearchResultCache resultCache;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("parallelA");
+            Team teamB = new Team("parallelB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Member("parallel" + i, 10 + i, i % 2 == 0 ? teamA : teamB));
+            }
+        });
+        resultCache.invalidateAll();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        //벌크 연산은 executeBulk 를 거쳐야 메모리 캐시 / 인덱스 / 복제본 / 통계가 변경을 안다
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QMember.member)
+                .where(QMember.member.username.like("parallel%")));
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QTeam.team)
+                .where(QTeam.team.name.like("parallel%")));
+    }
+
+    @Test
+    void searchPageParallelMatchesSequential() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("parallelA");
+
+        tx.executeWithoutResult(status -> {
+            Page<MemberTeamDto> sequential = memberRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+            Page<MemberTeamDto> parallel = memberRepository.searchPageParallel(condition, PageRequest.of(0, 2));
+
+            assertThat(parallel.getTotalElements()).isEqualTo(3);
+            assertThat(parallel.getTotalElements()).isEqualTo(sequential.getTotalElements());
+            assertThat(parallel.getContent()).extracting("username")
+                    .containsExactlyElementsOf(sequential.map(MemberTeamDto::getUsername));
+        });
+    }
+
+    @Test
+    void applyPaginationParallel() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(11);
+
+        tx.executeWithoutResult(status -> {
+            Page<Member> result = memberTestRepository.searchPageByApplyPageParallel(condition, PageRequest.of(0, 3));
+
+            assertThat(result.getTotalElements()).isEqualTo(4);
+            assertThat(result.getContent()).hasSize(3);
+        });
+    }
+
+    @Test
+    void contentFailureCancelsCount() throws InterruptedException {
+        CountDownLatch countStarted = new CountDownLatch(1);
+        CountDownLatch countInterrupted = new CountDownLatch(1);
+
+        assertThatThrownBy(() -> parallelCountExecutor.getPage(em, PageRequest.of(0, 10),
+                () -> {
+                    awaitQuietly(countStarted);
+                    throw new IllegalStateException("content failed");
+                },
+                countEm -> {
+                    countStarted.countDown();
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        countInterrupted.countDown();
+                    }
+                    return 0L;
+                }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("content failed");
+
+        assertThat(countInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void countFailureIsRethrown() {
+        assertThatThrownBy(() -> parallelCountExecutor.getPage(em, PageRequest.of(0, 2),
+                () -> List.of(1, 2),
+                countEm -> {
+                    throw new IllegalArgumentException("count failed");
+                }))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("count failed");
+    }
+
+    @Test
+    void slowCountFallsBackToCallerEntityManager() {
+        ParallelCountExecutor executor = new ParallelCountExecutor(emf, dataSource, 1, 1, 200);
+        try {
+            Page<Integer> page = executor.getPage(em, PageRequest.of(0, 2),
+                    () -> List.of(1, 2),
+                    countEm -> {
+                        if (countEm == em) {
+                            return 7L;
+                        }
+                        try {
+                            Thread.sleep(10_000);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return 0L;
+                    });
+
+            assertThat(page.getTotalElements()).isEqualTo(7);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void countPoolMustBeSmallerThanConnectionPool() {
+        assertThatThrownBy(() -> new ParallelCountExecutor(emf, dataSource, 100, 1, 200))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
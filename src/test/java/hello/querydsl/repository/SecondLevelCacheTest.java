@@ -0,0 +1,118 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.Team;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    2차 캐시는 커밋된 데이터만 공유하므로 @Transactional 롤백 대신 트랜잭션을 직접 나눠서 검증하고, 끝나면 데이터를 지운다.
+ */
+@SpringBootTest
+class SecondLevelCacheTest {
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Long memberId;
+    Long teamId;
+    Long otherTeamId;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            if (memberId != null) {
+                em.remove(em.find(Member.class, memberId));
+            }
+            if (teamId != null) {
+                em.remove(em.find(Team.class, teamId));
+            }
+            if (otherTeamId != null) {
+                em.remove(em.find(Team.class, otherTeamId));
+            }
+        });
+    }
+
+    @Test
+    void findByIdAndTeamNavigationHitCacheAfterWarmUp() {
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("cacheTeam");
+            em.persist(team);
+            Member member = new Member("cacheMember", 10, team);
+            memberJpaRepository.save(member);
+            teamId = team.getId();
+            memberId = member.getId();
+        });
+
+        //warm-up
+        tx.executeWithoutResult(status -> navigate());
+
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        tx.executeWithoutResult(status -> navigate());
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+    }
+
+    @Test
+    void movingMemberEvictsCachedTeamMembers() {
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("cacheTeam");
+            Team otherTeam = new Team("cacheOtherTeam");
+            em.persist(team);
+            em.persist(otherTeam);
+            Member member = new Member("cacheMember", 10, team);
+            memberJpaRepository.save(member);
+            teamId = team.getId();
+            otherTeamId = otherTeam.getId();
+            memberId = member.getId();
+        });
+
+        //두 팀의 members 컬렉션을 캐시에 올린다
+        tx.executeWithoutResult(status -> {
+            assertThat(em.find(Team.class, teamId).getMembers()).hasSize(1);
+            assertThat(em.find(Team.class, otherTeamId).getMembers()).isEmpty();
+        });
+
+        //owning 쪽(Member.team)만 바꾼다
+        tx.executeWithoutResult(status -> em.find(Member.class, memberId).setTeam(em.find(Team.class, otherTeamId)));
+
+        //새 세션에서 읽으면 옮긴 결과가 보인다
+        tx.executeWithoutResult(status -> {
+            assertThat(em.find(Team.class, teamId).getMembers()).isEmpty();
+            assertThat(em.find(Team.class, otherTeamId).getMembers()).extracting("id").containsExactly(memberId);
+        });
+    }
+
+    private void navigate() {
+        Member member = memberJpaRepository.findById(memberId).orElseThrow();
+        assertThat(member.getTeam().getName()).isEqualTo("cacheTeam");
+        assertThat(member.getTeam().getMembers()).hasSize(1);
+    }
+}
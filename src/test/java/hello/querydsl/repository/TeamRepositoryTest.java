@@ -0,0 +1,71 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.TeamMembersDto;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.Team;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+@SpringBootTest
+class TeamRepositoryTest {
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Test
+    void searchTeamsWithMembersRunsConstantQueries() {
+        for (int t = 0; t < 6; t++) {
+            Team team = new Team("team" + t);
+            em.persist(team);
+            for (int m = 0; m < 3; m++) {
+                em.persist(new Member("member" + t + "_" + m, 10 + m, team));
+            }
+        }
+        em.flush();
+        em.clear();
+
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        for (int size : new int[]{2, 5}) {
+            statistics.clear();
+            Page<TeamMembersDto> page = teamRepository.searchTeamsWithMembers(PageRequest.of(0, size));
+
+            assertThat(page.getContent()).hasSize(size);
+            assertThat(page.getContent()).allSatisfy(team -> assertThat(team.getMembers()).hasSize(3));
+            assertThat(page.getTotalElements()).isEqualTo(6);
+            //팀 1 + 회원 1 + count 1
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void searchTeamsWithMembersAppliesSort() {
+        for (int t = 0; t < 4; t++) {
+            em.persist(new Team("team" + t));
+        }
+        em.flush();
+        em.clear();
+
+        Page<TeamMembersDto> page = teamRepository.searchTeamsWithMembers(
+                PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "name")));
+
+        assertThat(page.getContent()).extracting("teamName").containsExactly("team3", "team2", "team1");
+    }
+}
@@ -0,0 +1,173 @@
+package hello.querydsl.repository;
+
+import hello.querydsl.dto.TeamStatsDto;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.QMember;
+import hello.querydsl.entity.QTeam;
+import hello.querydsl.entity.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static hello.querydsl.entity.QMember.member;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/*
+    통계는 커밋된 변경만 반영하므로 트랜잭션을 직접 나눠서 검증하고, 끝나면 데이터를 지운다.
+ */
+@SpringBootTest
+class TeamStatisticsTest {
+    @PersistenceContext
+    EntityManager em;
+    @Autowired
+    TeamStatistics teamStatistics;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Long teamAId;
+    Long teamBId;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("statsA");
+            Team teamB = new Team("statsB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("stats1", 10, teamA));
+            em.persist(new Member("stats2", 20, teamA));
+            em.persist(new Member("stats3", 30, teamB));
+            teamAId = teamA.getId();
+            teamBId = teamB.getId();
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        //벌크 연산은 executeBulk 를 거쳐야 메모리 캐시 / 인덱스 / 복제본 / 통계가 변경을 안다
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QMember.member)
+                .where(QMember.member.username.like("stats%")));
+        memberJpaRepository.executeBulk(query -> query
+                .delete(QTeam.team)
+                .where(QTeam.team.name.like("stats%")));
+    }
+
+    @Test
+    void committedChangesAreApplied() {
+        assertThat(stats(teamAId)).isEqualTo(new TeamStatsDto(teamAId, "statsA", 2, 30, 15.0, 10, 20));
+        assertThat(stats(teamBId)).isEqualTo(new TeamStatsDto(teamBId, "statsB", 1, 30, 30.0, 30, 30));
+
+        //팀 이동과 나이 변경
+        tx.executeWithoutResult(status -> {
+            Member moved = findMember("stats1");
+            moved.changeTeam(em.find(Team.class, teamBId));
+            moved.setAge(40);
+        });
+        assertThat(stats(teamAId)).isEqualTo(new TeamStatsDto(teamAId, "statsA", 1, 20, 20.0, 20, 20));
+        assertThat(stats(teamBId)).isEqualTo(new TeamStatsDto(teamBId, "statsB", 2, 70, 35.0, 30, 40));
+
+        //삭제하면 최소 / 최대도 남은 회원 기준으로 바뀐다
+        tx.executeWithoutResult(status -> em.remove(findMember("stats3")));
+        assertThat(stats(teamBId)).isEqualTo(new TeamStatsDto(teamBId, "statsB", 1, 40, 40.0, 40, 40));
+
+        tx.executeWithoutResult(status -> em.remove(findMember("stats2")));
+        assertThat(stats(teamAId)).isEqualTo(new TeamStatsDto(teamAId, "statsA", 0, 0, null, null, null));
+    }
+
+    @Test
+    void rolledBackChangesAreIgnored() {
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("stats4", 90, em.find(Team.class, teamAId)));
+            status.setRollbackOnly();
+        });
+
+        assertThat(stats(teamAId)).isEqualTo(new TeamStatsDto(teamAId, "statsA", 2, 30, 15.0, 10, 20));
+    }
+
+    @Test
+    void bulkUpdateRebuildsFromDatabase() {
+        memberJpaRepository.executeBulk(query -> query
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.username.like("stats%")));
+
+        assertThat(stats(teamAId)).isEqualTo(groupBy(teamAId))
+                .isEqualTo(new TeamStatsDto(teamAId, "statsA", 2, 32, 16.0, 11, 21));
+        assertThat(stats(teamBId)).isEqualTo(groupBy(teamBId));
+    }
+
+    @Test
+    void rebuildDoesNotWaitForOpenWriteTransaction() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        CountDownLatch rebuilt = new CountDownLatch(1);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> write = writer.submit(() -> tx.executeWithoutResult(status -> {
+                em.persist(new Member("stats4", 40, em.find(Team.class, teamAId)));
+                em.flush();
+                flushed.countDown();
+                try {
+                    rebuilt.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertThat(flushed.await(5, TimeUnit.SECONDS)).isTrue();
+
+            //변경을 기록한 트랜잭션이 열려 있어도 재적재는 기다리지 않는다
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> teamStatistics.rebuild());
+            rebuilt.countDown();
+            write.get(5, TimeUnit.SECONDS);
+        } finally {
+            writer.shutdownNow();
+        }
+
+        //재적재와 겹친 커밋은 stale 로 표시되고 다음 조회 때 다시 만든다
+        assertThat(stats(teamAId)).isEqualTo(new TeamStatsDto(teamAId, "statsA", 3, 70, 70 / 3.0, 10, 40));
+    }
+
+    private TeamStatsDto stats(Long teamId) {
+        return teamStatistics.getStatistics().stream()
+                .filter(stats -> stats.getTeamId().equals(teamId))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private TeamStatsDto groupBy(Long teamId) {
+        return tx.execute(status -> {
+            Object[] row = em.createQuery("select t.name, count(m), sum(m.age), min(m.age), max(m.age)" +
+                            " from Member m join m.team t where t.id = :teamId group by t.name", Object[].class)
+                    .setParameter("teamId", teamId)
+                    .getSingleResult();
+            long count = (Long) row[1];
+            long sum = (Long) row[2];
+            return new TeamStatsDto(teamId, (String) row[0], count, sum, (double) sum / count,
+                    (Integer) row[3], (Integer) row[4]);
+        });
+    }
+
+    private Member findMember(String username) {
+        return em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+}
@@ -0,0 +1,113 @@
+package hello.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import hello.querydsl.entity.Member;
+import hello.querydsl.entity.Team;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static hello.querydsl.entity.QMember.member;
+import static hello.querydsl.entity.QTeam.team;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+@SpringBootTest
+class CountQueriesTest {
+    @PersistenceContext
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    void setUp() {
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("countA");
+        Team teamB = new Team("countB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("count1", 10, teamA));
+        em.persist(new Member("count2", 20, teamA));
+        em.persist(new Member("count3", 30, teamB));
+        em.persist(new Member("count4", 40, null));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void unusedToOneJoinAndFetchJoinAreRemoved() {
+        JPAQuery<Member> content = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(member.username.startsWith("count"))
+                .orderBy(member.age.desc());
+
+        JPAQuery<Long> count = CountQueries.derive(em, content).orElseThrow();
+
+        assertThat(count.toString())
+                .contains("count(member1)")
+                .doesNotContain("join", "order by", "distinct");
+        assertThat(count.fetchOne()).isEqualTo(content.fetch().size()).isEqualTo(4);
+    }
+
+    @Test
+    void joinUsedInWhereIsKeptWithoutFetch() {
+        JPAQuery<Member> content = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(team.name.eq("countA"));
+
+        JPAQuery<Long> count = CountQueries.derive(em, content).orElseThrow();
+
+        assertThat(count.toString())
+                .contains("left join member1.team as team")
+                .doesNotContain("fetch");
+        assertThat(count.fetchOne()).isEqualTo(2);
+    }
+
+    @Test
+    void countDistinctOnlyWhenToManyJoinRemains() {
+        //distinct 루트 조회에서 쓰지 않는 to-many join 은 빼고 count(team)
+        JPAQuery<Team> fetchMembers = queryFactory
+                .selectFrom(team).distinct()
+                .leftJoin(team.members, member).fetchJoin()
+                .where(team.name.startsWith("count"));
+        JPAQuery<Long> withoutJoin = CountQueries.derive(em, fetchMembers).orElseThrow();
+        assertThat(withoutJoin.toString()).contains("count(team)").doesNotContain("join");
+        assertThat(withoutJoin.fetchOne()).isEqualTo(2);
+
+        //where 에서 쓰는 to-many join 이 남으면 count(distinct team)
+        JPAQuery<Team> filterByMember = queryFactory
+                .selectFrom(team).distinct()
+                .join(team.members, member)
+                .where(team.name.startsWith("count"), member.age.goe(10));
+        JPAQuery<Long> distinct = CountQueries.derive(em, filterByMember).orElseThrow();
+        assertThat(distinct.toString()).contains("count(distinct team)");
+        assertThat(distinct.fetchOne()).isEqualTo(filterByMember.fetch().size()).isEqualTo(2);
+
+        //distinct 가 아니면 to-many join 으로 늘어난 row 수 그대로 센다
+        JPAQuery<Team> rows = queryFactory
+                .selectFrom(team)
+                .leftJoin(team.members, member)
+                .where(team.name.startsWith("count"));
+        JPAQuery<Long> rowCount = CountQueries.derive(em, rows).orElseThrow();
+        assertThat(rowCount.toString()).contains("count(team)", "left join team.members as member1");
+        assertThat(rowCount.fetchOne()).isEqualTo(rows.fetch().size()).isEqualTo(3);
+    }
+
+    @Test
+    void groupByIsNotDerived() {
+        JPAQuery<String> grouped = queryFactory
+                .select(team.name)
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name);
+
+        assertThat(CountQueries.derive(em, grouped)).isEmpty();
+    }
+}
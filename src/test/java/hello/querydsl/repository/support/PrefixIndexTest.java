@@ -0,0 +1,116 @@
+package hello.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixIndexTest {
+
+    @Test
+    void searchByPrefixInNameAndIdOrder() {
+        PrefixIndex index = PrefixIndex.builder()
+                .add("member2", 3)
+                .add("member1", 2)
+                .add("member1", 1)
+                .add("other", 4)
+                .build();
+
+        assertThat(index.distinctNames()).isEqualTo(3);
+        assertThat(index.search("mem", 10)).extracting("id").containsExactly(1L, 2L, 3L);
+        assertThat(index.search("mem", 2)).extracting("id").containsExactly(1L, 2L);
+        assertThat(index.search("x", 10)).isEmpty();
+    }
+
+    @Test
+    void applyMergesDeltaWithSortedArray() {
+        PrefixIndex index = PrefixIndex.builder()
+                .add("alice", 1)
+                .add("bob", 2)
+                .add("carol", 3)
+                .build();
+
+        Map<Long, String> changes = new HashMap<>();
+        changes.put(2L, "alfred"); //이름 변경
+        changes.put(3L, null);     //삭제
+        changes.put(4L, "alex");   //추가
+        PrefixIndex changed = index.apply(changes);
+
+        assertThat(changed.search("al", 10)).extracting("name").containsExactly("alex", "alfred", "alice");
+        assertThat(changed.search("b", 10)).isEmpty();
+        assertThat(changed.search("c", 10)).isEmpty();
+        assertThat(changed.size()).isEqualTo(3);
+        //원래 인스턴스는 바뀌지 않는다
+        assertThat(index.search("b", 10)).extracting("id").containsExactly(2L);
+    }
+
+    @Test
+    void largeDeltaIsMergedIntoArrayOnCompact() {
+        PrefixIndex index = PrefixIndex.builder().add("member0", 0).build();
+        Map<Long, String> changes = new HashMap<>();
+        for (long id = 1; id <= PrefixIndex.MERGE_THRESHOLD; id++) {
+            changes.put(id, "member" + id);
+        }
+        changes.put(0L, null);
+        index = index.apply(changes);
+
+        //apply 는 layer 만 쌓는다
+        assertThat(index.distinctNames()).isEqualTo(1);
+        assertThat(index.size()).isEqualTo(PrefixIndex.MERGE_THRESHOLD);
+        assertThat(index.needsCompaction()).isTrue();
+
+        PrefixIndex compacted = index.compact();
+        assertThat(compacted.needsCompaction()).isFalse();
+        assertThat(compacted.distinctNames()).isEqualTo(PrefixIndex.MERGE_THRESHOLD);
+        assertThat(compacted.size()).isEqualTo(PrefixIndex.MERGE_THRESHOLD);
+        assertThat(compacted.search("member100", 3)).extracting("name")
+                .containsExactly("member100", "member1000", "member1001");
+        assertThat(compacted.search("member0", 10)).isEmpty();
+    }
+
+    @Test
+    void mergeKeepsNameAndIdOrder() {
+        PrefixIndex index = PrefixIndex.builder()
+                .add("b", 2)
+                .add("b", 5)
+                .add("d", 7)
+                .build();
+        Map<Long, String> changes = new HashMap<>();
+        for (long id = 100; id < 100 + PrefixIndex.MERGE_THRESHOLD; id++) {
+            changes.put(id, "z");
+        }
+        changes.put(3L, "b");  //같은 이름 사이에 추가
+        changes.put(1L, "a");  //배열보다 앞
+        changes.put(5L, "c");  //이름 변경
+        changes.put(7L, null); //삭제
+        PrefixIndex merged = index.apply(changes).compact();
+
+        assertThat(merged.search("", 5)).extracting("id").containsExactly(1L, 2L, 3L, 5L, 100L);
+        assertThat(merged.search("d", 10)).isEmpty();
+        assertThat(merged.distinctNames()).isEqualTo(4);
+        assertThat(merged.size()).isEqualTo(4 + PrefixIndex.MERGE_THRESHOLD);
+    }
+
+    @Test
+    void layersAppliedDuringCompactionAreRebased() {
+        PrefixIndex snapshot = PrefixIndex.builder().add("alice", 1).build();
+        for (long id = 2; id < 2 + PrefixIndex.MAX_LAYERS; id++) {
+            snapshot = snapshot.apply(Map.of(id, "user" + id));
+        }
+        assertThat(snapshot.needsCompaction()).isTrue();
+
+        //compact 하는 동안 들어온 변경
+        PrefixIndex current = snapshot.apply(Map.of(1L, "alfred"));
+        PrefixIndex compacted = snapshot.compact();
+        PrefixIndex rebased = current.rebase(snapshot, compacted);
+
+        assertThat(rebased.needsCompaction()).isFalse();
+        assertThat(rebased.size()).isEqualTo(current.size());
+        assertThat(rebased.search("al", 10)).extracting("name").containsExactly("alfred");
+        assertThat(rebased.search("user", 100)).hasSize(PrefixIndex.MAX_LAYERS);
+        //snapshot 에서 이어진 인스턴스가 아니면 rebase 하지 않는다
+        assertThat(PrefixIndex.EMPTY.rebase(snapshot, compacted)).isNull();
+    }
+}